@@ -12,6 +12,24 @@ public class AgentMemory
 	/*private*/ ArrayList<ArmMemory> indexedList;
 	/*private*/ SortedList<ArmMemory> rankedList;
 	
+	/** The cost of the cheapest arm */
+	private final double minimumCost;
+	
+	/** The cost of the most expensive arm */
+	private final double maximumCost;
+	
+	/** The average cost of the arms */
+	private final double meanCost;
+	
+	/** The algorithm every recorded pull is handed to, or <code>null</code> */
+	private ObservingAlgorithm observer;
+	
+	/** Advanced on every reset, making the statistics of every arm stale */
+	private final TrialEpoch trialEpoch;
+	
+	/** The ranking of arms that have never been pulled: by index */
+	private final SortedList<ArmMemory> freshRanking;
+	
 	/**
 	 * Creates a new arm memory object for the given suppliers
 	 * @param suppliers All of the child suppliers of the agent
@@ -19,10 +37,11 @@ public class AgentMemory
 	public AgentMemory(ArrayList<Supplier> suppliers)
 	{
 		// initialize the indexed list
+		trialEpoch = new TrialEpoch();
 		indexedList = new ArrayList<ArmMemory>(suppliers.size());
 		for (int i = 0; i < suppliers.size(); i++)
 		{
-			indexedList.add(new ArmMemory(suppliers.get(i), i));
+			indexedList.add(new ArmMemory(suppliers.get(i), i, trialEpoch));
 		}
 		
 		// initialize the ranked list
@@ -31,19 +50,42 @@ public class AgentMemory
 		{
 			rankedList.append(arm);
 		}
+		freshRanking = new SortedList<ArmMemory>(rankedList);
+		
+		// the suppliers never change their costs, so these can be found once
+		double minimum = Double.MAX_VALUE;
+		double maximum = 0;
+		double total = 0;
+		for (Supplier supplier : suppliers)
+		{
+			minimum = Math.min(minimum, supplier.getCost());
+			maximum = Math.max(maximum, supplier.getCost());
+			total += supplier.getCost();
+		}
+		minimumCost = minimum;
+		maximumCost = maximum;
+		meanCost = total / suppliers.size();
+	}
+	
+	/**
+	 * Set the algorithm every recorded pull is handed to
+	 * @param observer the algorithm to observe pulls, or <code>null</code> for none
+	 */
+	public void setObserver(ObservingAlgorithm observer)
+	{
+		this.observer = observer;
 	}
 	
 	/**
-	 * Reset this Agent Memory
+	 * Reset this Agent Memory. The arms are not touched: advancing the epoch makes their
+	 * statistics stale, and each arm resets itself when it is next used. Fresh arms all tie
+	 * and rank by index, so the ranked list is restored with a single copy instead of
+	 * re-inserting every arm.
 	 */
 	public void reset()
 	{
-		rankedList.clear();
-		for (ArmMemory arm : indexedList)
-		{
-			arm.reset();
-			rankedList.append(arm);
-		}
+		trialEpoch.advance();
+		rankedList.copyFrom(freshRanking);
 	}
 	
 	/**
@@ -52,6 +94,25 @@ public class AgentMemory
 	 * @return the time the arm took to supply us
 	 */
 	public double pull(int request)
+	{
+		final ArmMemory selectedArmMemory = beginPull(request);
+		
+		// pull the arm
+		double timeSpent = selectedArmMemory.getSupplier().supply();
+		
+		endPull(selectedArmMemory, timeSpent);
+		
+		// return time spent by the arm
+		return timeSpent;
+	}
+	
+	/**
+	 * Select the requested arm and take it out of the ranked list, so that its memory
+	 * can be updated once the purchase from it is complete
+	 * @param request The arm pull request
+	 * @return the selected arm, which must be handed to {@link #endPull(ArmMemory, double)}
+	 */
+	public ArmMemory beginPull(int request)
 	{
 		ArmMemory selectedArmMemory;
 		
@@ -74,19 +135,273 @@ public class AgentMemory
 			
 		}
 		
-		// pull the arm
-		double timeSpent = selectedArmMemory.getSupplier().supply();
+		return selectedArmMemory;
+	}
+	
+	/**
+	 * Select the requested arm without taking it out of the ranked list. This is used for
+	 * asynchronous purchases, where other arms are pulled while the purchase is made.
+	 * @param request The arm pull request
+	 * @return the selected arm, which must be handed to {@link #recordPull(ArmMemory, double)}
+	 */
+	public ArmMemory select(int request)
+	{
+		if (ArmPullRequest.isUseRankedList(request))
+		{
+			return rankedList.get(ArmPullRequest.getIndexInList(request));
+		}
+		else
+		{
+			return indexedList.get(ArmPullRequest.getIndexInList(request));
+		}
+	}
+	
+	/**
+	 * Record a completed purchase from an arm that was left in the ranked list while the
+	 * purchase was made, as selected by {@link #select(int)}
+	 * @param arm the arm that was pulled
+	 * @param timeSpent the time the arm took to supply us
+	 */
+	public void recordPull(ArmMemory arm, double timeSpent)
+	{
+		// the arm's average has not changed since it was ranked, so it can still be found
+		rankedList.remove(arm);
+		arm.recordPull(timeSpent);
+		rankedList.add(arm);
 		
+		if (Metrics.ENABLED)
+		{
+			Metrics.RANK_UPDATES.increment();
+		}
+		
+		if (observer != null)
+		{
+			observer.observe(arm.getIndex(), 1, timeSpent);
+		}
+	}
+	
+	/**
+	 * Record a completed purchase from an arm selected by {@link #beginPull(int)}
+	 * @param selectedArmMemory the arm that was pulled
+	 * @param timeSpent the time the arm took to supply us
+	 */
+	public void endPull(ArmMemory selectedArmMemory, double timeSpent)
+	{
 		// record arm pull
 		selectedArmMemory.recordPull(timeSpent);
 		
 		// replace the updated ArmMemory
 		rankedList.add(selectedArmMemory);
 		
+		if (Metrics.ENABLED)
+		{
+			Metrics.RANK_UPDATES.increment();
+		}
+		
+		if (observer != null)
+		{
+			observer.observe(selectedArmMemory.getIndex(), 1, timeSpent);
+		}
+	}
+	
+	/**
+	 * Pull the top-ranked arm and update relevant memory. This is equivalent to pulling
+	 * <code>ArmPullRequest.get(size() - 1, true)</code>, except that the arm is only moved
+	 * within the ranked list if the pull costs it its place at the top.
+	 * @return the time the arm took to supply us
+	 */
+	public double pullBest()
+	{
+		final ArmMemory best = getBest();
+		
+		// pull the arm
+		double timeSpent = best.getSupplier().supply();
+		
+		endPullBest(best, timeSpent);
+		
 		// return time spent by the arm
 		return timeSpent;
 	}
 	
+	/**
+	 * Get the top-ranked arm
+	 * @return the top-ranked arm
+	 */
+	public ArmMemory getBest()
+	{
+		return rankedList.get(rankedList.size() - 1);
+	}
+	
+	/**
+	 * Record a completed purchase from the top-ranked arm, which is left in the ranked list
+	 * while the purchase is made. The arm is only moved within the ranked list if the pull
+	 * costs it its place at the top.
+	 * @param best the top-ranked arm, as returned by {@link #getBest()}
+	 * @param timeSpent the time the arm took to supply us
+	 */
+	public void endPullBest(ArmMemory best, double timeSpent)
+	{
+		final int last = rankedList.size() - 1;
+		assert best == rankedList.get(last);
+		
+		// record arm pull
+		best.recordPull(timeSpent);
+		
+		// the ranked list is only out of order if the arm fell below the runner-up
+		if (last > 0 && best.compareTo(rankedList.get(last - 1)) < 0)
+		{
+			rankedList.remove(last);
+			rankedList.add(best);
+			
+			if (Metrics.ENABLED)
+			{
+				Metrics.RANK_UPDATES.increment();
+			}
+		}
+		
+		if (observer != null)
+		{
+			observer.observe(best.getIndex(), 1, timeSpent);
+		}
+	}
+	
+	/**
+	 * Check if the top-ranked arm is deterministic, in which case {@link #pullBestDeterministic(int)}
+	 * may be used to pull it in bulk
+	 * @return <code>true</code> if every pull of the top-ranked arm takes exactly its mean time
+	 */
+	public boolean isBestDeterministic()
+	{
+		return rankedList.get(rankedList.size() - 1).getSupplier().isDeterministic();
+	}
+	
+	/**
+	 * Pull the deterministic top-ranked arm several times in O(1). Every pull takes exactly
+	 * the arm's mean time, so its recorded average never changes and it keeps its place at
+	 * the top of the ranked list.
+	 * @param pulls the number of times to pull the arm
+	 * @return the time each pull took
+	 */
+	public double pullBestDeterministic(int pulls)
+	{
+		final ArmMemory best = rankedList.get(rankedList.size() - 1);
+		assert best.getSupplier().isDeterministic();
+		
+		final double timeSpent = best.getSupplier().getMeanTime();
+		best.recordPulls(pulls, timeSpent);
+		
+		if (observer != null)
+		{
+			observer.observe(best.getIndex(), pulls, timeSpent);
+		}
+		
+		return timeSpent;
+	}
+	
+	/**
+	 * Pull the top-ranked arm several times as one aggregate purchase, drawing the total
+	 * time from the distribution of the sum in a single sample. The spread of the pulls is
+	 * drawn too, so the arm's variance stays true. The arm is re-ranked once, after all of
+	 * the pulls. The arm must be a {@link SimpleSupplier}. If the arm needs the individual
+	 * times, because it tracks samples, sketches them or only remembers some pulls, it is
+	 * pulled individually instead.
+	 * @param pulls the number of times to pull the arm
+	 * @return the total time the pulls took
+	 */
+	public double pullBestAggregated(int pulls)
+	{
+		final int last = rankedList.size() - 1;
+		final ArmMemory best = rankedList.get(last);
+		
+		if (best.isEnabled() || best.isSketchEnabled() || !ArmMemory.remembersEveryPull())
+		{
+			// individual samples are required
+			double totalTime = 0;
+			for (int i = 0; i < pulls; i++)
+			{
+				totalTime += pullBest();
+			}
+			return totalTime;
+		}
+		
+		final SimpleSupplier supplier = (SimpleSupplier)best.getSupplier();
+		final double totalTime = supplier.supplySum(pulls);
+		best.recordPulls(pulls, totalTime / pulls, supplier.getSumDeviations());
+		
+		// the ranked list is only out of order if the arm fell below the runner-up
+		if (last > 0 && best.compareTo(rankedList.get(last - 1)) < 0)
+		{
+			rankedList.remove(last);
+			rankedList.add(best);
+			
+			if (Metrics.ENABLED)
+			{
+				Metrics.RANK_UPDATES.increment();
+			}
+		}
+		
+		if (observer != null)
+		{
+			observer.observe(best.getIndex(), pulls, totalTime / pulls);
+		}
+		
+		return totalTime;
+	}
+	
+	/**
+	 * Get the best-ranked arm that costs no more than the given budget
+	 * @param budget the budget available, in {@link Budget} units
+	 * @return the best-ranked affordable arm, or <code>null</code> if no arm is affordable
+	 */
+	public ArmMemory getBestAffordable(long budget)
+	{
+		for (int rank = rankedList.size() - 1; rank >= 0; rank--)
+		{
+			final ArmMemory arm = rankedList.get(rank);
+			if (arm.getCostUnits() <= budget)
+			{
+				return arm;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the cost of the cheapest arm
+	 * @return the cost of the cheapest arm
+	 */
+	public double getMinimumCost()
+	{
+		return minimumCost;
+	}
+	
+	/**
+	 * Get the cost of the most expensive arm
+	 * @return the cost of the most expensive arm
+	 */
+	public double getMaximumCost()
+	{
+		return maximumCost;
+	}
+	
+	/**
+	 * Get the average cost of the arms
+	 * @return the average cost of the arms
+	 */
+	public double getMeanCost()
+	{
+		return meanCost;
+	}
+	
+	/**
+	 * Check if every arm costs the same, in which case any arm is affordable whenever one is
+	 * @return <code>true</code> if every arm costs the same
+	 */
+	public boolean isUniformCost()
+	{
+		return minimumCost == maximumCost;
+	}
+	
 	/**
 	 * Get the number of arms
 	 * @return the number of arms
@@ -105,6 +420,16 @@ public class AgentMemory
 		return new SortedList<ArmMemory>(rankedList);
 	}
 	
+	/**
+	 * Overwrite an existing snapshot with the current ranked list. This avoids
+	 * allocating a new list for every snapshot.
+	 * @param snapshot the list to overwrite
+	 */
+	public void getRankedListSnapshot(SortedList<ArmMemory> snapshot)
+	{
+		snapshot.copyFrom(rankedList);
+	}
+	
 	/**
 	 * Get the total average of all of the arms' performances
 	 * @param beginningIndex The index (inclusive) to start the average at
@@ -1,5 +1,9 @@
 package com.zkxs.supplychain;
 import java.util.ArrayList;
+import java.util.Random;
+
+import com.zkxs.supplychain.SupplyExecutor.PurchaseTask;
+import com.zkxs.supplychain.SupplyExecutor.SupplyTask;
 
 import org.apache.commons.math3.distribution.RealDistribution;
 
@@ -11,32 +15,180 @@ import org.apache.commons.math3.distribution.RealDistribution;
  */
 public class AgentSupplier extends Supplier 
 {	
+	/** The largest number of pulls requested from a {@link BatchAlgorithm} at once */
+	private static final int PULL_BATCH_SIZE = 64;
+	
 	long id = RandomProvider.rand.nextLong(); // TODO: make a getter
 	
+	/**
+	 * This agent's own random number generator, reseeded every trial from {@link #id} and
+	 * the trial's seed. Agents may explore on pool threads, where drawing from
+	 * {@link RandomProvider} would make the run depend on how the threads are scheduled.
+	 */
+	private final Random random = new Random(id);
+	
 	/** The algorithm used to select the next arm to pull */
 	Algorithm algorithm;
 	
+	/** {@link #algorithm} if it supports selecting batches of arms, otherwise <code>null</code> */
+	private BatchAlgorithm batchAlgorithm;
+	
+	/** The time {@link #algorithm} takes to select arms, only used if {@link Metrics#ENABLED} */
+	private LatencyHistogram selectLatency;
+	
+	/** Buffer for the pull requests selected by the algorithm */
+	private final int[] pullRequests;
+	
 	/** This supplier's suppliers */
 	private final ArrayList<Supplier> children;
 	
 	/** The agent's memory of each arm's performance */
 	private AgentMemory agentMemory;
 	
-	/** The current budget of this agent */
-	private double budget;
+	/** The current budget of this agent, in {@link Budget} units */
+	private long budget;
+	
+	/** The budget given to the first explore of this trial */
+	private double initialBudget;
+	
+	/** Has the algorithm been initialized for this trial? */
+	private boolean algorithmInitialized;
 	
 	/** The total amount of time this agent has taken */
 	private double totalTimeTaken;
-
-	/** The number of times the agent has pulled an arm */
+	
+	/** The number of times the agent has pulled an arm this trial, which is also the clock its suppliers drift by */
 	private int totalPulls;
 	
 	/** This agent's budget is multiplied by this amount when exploring */
 	private final double budgetMultiplier;
 	
+	/** The budget each {@link #supply()} adds, in {@link Budget} units */
+	private final long supplyBudget;
+	
 	/** Is this node the root node? */
 	private final boolean isRoot;
 	
+	/** Are all of this agent's suppliers leaf nodes? */
+	private final boolean leafSuppliers;
+	
+	/** The maximum time taken by a single pull during the current explore */
+	private double maxTimeSpent;
+	
+	/** The total time spent during the current explore */
+	private double totalTimeSpent;
+	
+	/** The number of pulls during the current explore */
+	private int pullsThisExplore;
+	
+	/**
+	 * Estimates the percentile of the times of the pulls during the current explore, only
+	 * allocated when aggregating by {@link Aggregation#PERCENTILE}
+	 */
+	private final StreamingQuantile timeQuantile;
+	
+	/** The budget available at the start of the current explore, in {@link Budget} units */
+	private long budgetThisExplore;
+	
+	/** The cost of the cheapest arm in {@link Budget} units. Once the budget falls below this, it is spent. */
+	private final long minimumCost;
+	
+	/** The cost of the most expensive arm in {@link Budget} units, which bounds how many pulls a batch can afford */
+	private final long maximumCost;
+	
+	/** Do all arms cost the same? If so, no request can ever be unaffordable. */
+	private final boolean uniformCost;
+	
+	/** The number of valid requests in {@link #pullRequests} */
+	private int requestCount;
+	
+	/** The index of the next request in {@link #pullRequests} to issue */
+	private int nextRequest;
+	
+	/** The arm of the child agent currently being explored to complete a purchase */
+	private ArmMemory pendingArm;
+	
+	/** Was {@link #pendingArm} the top-ranked arm of a committed algorithm? */
+	private boolean pendingBest;
+	
+	/** The time each purchase took when purchases are made in parallel, allocated on first use */
+	private double[] parallelTimes;
+	
+	/** The task making the parallel purchases from each child, by index, allocated on first use */
+	private SupplyTask[] supplyTasks;
+	
+	/** The tasks with purchases in the current parallel batch */
+	private ArrayList<SupplyTask> activeTasks;
+	
+	/** Does {@link #supplyTasks} hold a task in the current parallel batch? Indexed like the children */
+	private boolean[] taskActive;
+	
+	/** The channel through which a parent buys from this agent asynchronously, or <code>null</code> */
+	private PurchaseTask purchase;
+	
+	/** Is a parent currently waiting on an asynchronous purchase from this agent? */
+	private boolean purchasing;
+	
+	/**
+	 * The arms of outstanding asynchronous purchases, oldest first, in a circular buffer, or
+	 * <code>null</code> if this agent buys synchronously
+	 */
+	private ArmMemory[] outstandingPurchases;
+	
+	/** The index of the oldest outstanding asynchronous purchase */
+	private int oldestPurchase;
+	
+	/** The number of outstanding asynchronous purchases */
+	private int outstandingCount;
+	
+	/** The stack of agents being explored, used when this agent is the starting point of an explore */
+	private final ArrayList<AgentSupplier> exploreStack;
+	
+	/** The trial counter shared by every agent in this agent's tree */
+	private TrialEpoch trialEpoch;
+	
+	/** The trial epoch this agent's state belongs to */
+	private int epoch;
+	
+	/** The depth of this agent in its tree, 0 at the root */
+	private int depth;
+	
+	/** The mean time of the child marked as the best arm, which regret is measured against */
+	private final double bestMeanTime;
+	
+	/** The number of pulls of the child marked as the best arm this trial */
+	private int bestArmPulls;
+	
+	/** The mean time of every pull this trial, less the mean time of the best child */
+	private double regret;
+	
+	/** The pull from which the top-ranked arm has been the best arm, or -1 if it is not */
+	private int identifiedAt;
+	
+	/** The tally this agent's regret is rolled into after every explore, or <code>null</code> */
+	private RegretTally regretTally;
+	
+	/** The reporter the pulls of leaf suppliers are counted with, or <code>null</code> */
+	private ProgressReporter progress;
+	
+	/** Do this agent's arms summarize their times in a quantile sketch every trial? */
+	private boolean sketchArms;
+	
+	/** The pulls already rolled into {@link #regretTally} this trial */
+	private int reportedPulls;
+	
+	/** The pulls of the best arm already rolled into {@link #regretTally} this trial */
+	private int reportedBestArmPulls;
+	
+	/** The regret already rolled into {@link #regretTally} this trial */
+	private double reportedRegret;
+	
+	/** The pull at which the best arm was identified, as last rolled into {@link #regretTally} */
+	private int reportedIdentifiedAt;
+	
+	/** Has the algorithm's commitment this trial been traced? Only used if {@link Trace#ENABLED} */
+	private boolean commitTraced;
+	
 	/**
 	 * Constructs a new AgentSupplier
 	 * @param algorithm
@@ -56,29 +208,321 @@ public class AgentSupplier extends Supplier
 		assert !algorithm.requiresInitialBudget() || isRoot : "required inital budget IMPLIES root node";
 		
 		this.algorithm = algorithm;
+		this.batchAlgorithm = asBatchAlgorithm(algorithm);
+		this.selectLatency = Metrics.ENABLED ? Metrics.selectLatency(algorithm) : null;
 		this.children = children;
 		this.budgetMultiplier = budgetMultiplier;
+		this.supplyBudget = Budget.toUnits(cost * budgetMultiplier);
 		this.isRoot = isRoot;
 		
+		boolean leaves = true;
+		for (Supplier child : children)
+		{
+			leaves &= child.isLeafNode();
+			child.setBuyer(this);
+		}
+		this.leafSuppliers = leaves;
+		this.bestMeanTime = findBestMeanTime(children);
+		
 		agentMemory = new AgentMemory(children);
+		agentMemory.setObserver(asObservingAlgorithm(algorithm));
+		minimumCost = Budget.toUnits(agentMemory.getMinimumCost());
+		maximumCost = Budget.toUnits(agentMemory.getMaximumCost());
+		uniformCost = agentMemory.isUniformCost();
+		pullRequests = new int[PULL_BATCH_SIZE];
+		exploreStack = new ArrayList<AgentSupplier>();
+		
+		if (SupplyChainDriver.AGGREGATION == Aggregation.PERCENTILE)
+		{
+			timeQuantile = new StreamingQuantile(SupplyChainDriver.AGGREGATION_PERCENTILE);
+		}
+		else
+		{
+			timeQuantile = null;
+		}
+		
+		allocatePurchaseWindow(SupplyChainDriver.ASYNC_PURCHASE_WINDOW);
 		totalPulls = 0;
 		totalTimeTaken = 0;
 		budget = 0;
+		initialBudget = 0;
+		algorithmInitialized = false;
+		bestArmPulls = 0;
+		regret = 0;
+		identifiedAt = -1;
+		reportedIdentifiedAt = -1;
+		
+		// this agent is the root of its own tree until a parent adopts it
+		setTrialEpoch(new TrialEpoch());
 	}
 	
 	/**
-	 * Reset the state of this agent
+	 * Check if an algorithm observes every pull
+	 * @param algorithm the algorithm to check
+	 * @return the algorithm as an ObservingAlgorithm, or <code>null</code> if it does not observe pulls
 	 */
-	public void reset(RealDistribution distribution, double scale)
+	private static ObservingAlgorithm asObservingAlgorithm(Algorithm algorithm)
 	{
-		setDistribution(distribution);
-		setScale(scale);
+		if (algorithm instanceof ObservingAlgorithm)
+		{
+			return (ObservingAlgorithm)algorithm;
+		}
+		else
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Check if an algorithm can select batches of arms
+	 * @param algorithm the algorithm to check
+	 * @return the algorithm as a BatchAlgorithm, or <code>null</code> if it does not support batches
+	 */
+	private static BatchAlgorithm asBatchAlgorithm(Algorithm algorithm)
+	{
+		if (algorithm instanceof BatchAlgorithm)
+		{
+			return (BatchAlgorithm)algorithm;
+		}
+		else
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Find the mean time regret is measured against
+	 * @param children the suppliers of an agent
+	 * @return the mean time of the child marked as the best arm, or the lowest mean time if
+	 * no child is marked
+	 */
+	private static double findBestMeanTime(ArrayList<Supplier> children)
+	{
+		double lowest = Double.MAX_VALUE;
+		for (Supplier child : children)
+		{
+			if (child.isBestArm())
+			{
+				return child.getMeanTime();
+			}
+			lowest = Math.min(lowest, child.getMeanTime());
+		}
+		return lowest;
+	}
+	
+	/**
+	 * Set up this agent alone to buy from its child agents asynchronously
+	 * @param window the most purchases that may be outstanding at once, or 0 to buy synchronously
+	 */
+	private void allocatePurchaseWindow(int window)
+	{
+		if (window > 0)
+		{
+			purchase = new PurchaseTask(this);
+			outstandingPurchases = leafSuppliers ? null : new ArmMemory[window];
+		}
+		else
+		{
+			purchase = null;
+			outstandingPurchases = null;
+		}
+		oldestPurchase = 0;
+		outstandingCount = 0;
+	}
+	
+	/**
+	 * Set how this agent and every agent below it buy from their child agents. This is
+	 * {@link SupplyChainDriver#ASYNC_PURCHASE_WINDOW} unless changed here, and must not be
+	 * changed during an explore.
+	 * @param window the most purchases that may be outstanding at once, or 0 to buy synchronously
+	 */
+	public void setPurchaseWindow(int window)
+	{
+		final ArrayList<AgentSupplier> stack = new ArrayList<AgentSupplier>();
+		stack.add(this);
+		
+		while (!stack.isEmpty())
+		{
+			final AgentSupplier agent = stack.remove(stack.size() - 1);
+			agent.allocatePurchaseWindow(window);
+			
+			for (Supplier child : agent.children)
+			{
+				if (child instanceof AgentSupplier)
+				{
+					stack.add((AgentSupplier)child);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Roll the regret of this agent and every agent below it into a tally at the end of
+	 * each of their explores, from the next trial on
+	 * @param regretTally the tally to roll regret into, or <code>null</code> to stop
+	 */
+	public void setRegretTally(RegretTally regretTally)
+	{
+		final ArrayList<AgentSupplier> stack = new ArrayList<AgentSupplier>();
+		stack.add(this);
+		
+		while (!stack.isEmpty())
+		{
+			final AgentSupplier agent = stack.remove(stack.size() - 1);
+			agent.regretTally = regretTally;
+			
+			for (Supplier child : agent.children)
+			{
+				if (child instanceof AgentSupplier)
+				{
+					stack.add((AgentSupplier)child);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Count the samples this agent and every agent below it draw from leaf suppliers with a
+	 * progress reporter. Only agents whose suppliers are all leaves draw such samples, and they
+	 * hand them over at the end of each explore.
+	 * @param progress the reporter to count samples with, or <code>null</code> to stop
+	 */
+	public void setProgressReporter(ProgressReporter progress)
+	{
+		final ArrayList<AgentSupplier> stack = new ArrayList<AgentSupplier>();
+		stack.add(this);
+		
+		while (!stack.isEmpty())
+		{
+			final AgentSupplier agent = stack.remove(stack.size() - 1);
+			agent.progress = agent.leafSuppliers ? progress : null;
+			
+			for (Supplier child : agent.children)
+			{
+				if (child instanceof AgentSupplier)
+				{
+					stack.add((AgentSupplier)child);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Have this agent's arms summarize their times in quantile sketches, from the next
+	 * trial on, so that {@link ArmMemory#getQuantile(double)} can be read after each trial
+	 * @param sketchArms <code>true</code> to sketch the times of this agent's arms
+	 */
+	public void setSketchArms(boolean sketchArms)
+	{
+		this.sketchArms = sketchArms;
+	}
+	
+	/**
+	 * Share a trial counter with this agent and every agent below it, and number their
+	 * depths from this agent. The tree is walked with an explicit stack so that its depth
+	 * is bounded only by memory.
+	 * @param trialEpoch the trial counter to share
+	 */
+	private void setTrialEpoch(TrialEpoch trialEpoch)
+	{
+		final ArrayList<AgentSupplier> stack = new ArrayList<AgentSupplier>();
+		stack.add(this);
+		depth = 0;
+		
+		while (!stack.isEmpty())
+		{
+			final AgentSupplier agent = stack.remove(stack.size() - 1);
+			agent.trialEpoch = trialEpoch;
+			agent.epoch = trialEpoch.get();
+			
+			for (Supplier child : agent.children)
+			{
+				if (child instanceof AgentSupplier)
+				{
+					((AgentSupplier)child).depth = agent.depth + 1;
+					stack.add((AgentSupplier)child);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Begin a new trial on this agent's entire tree. This only advances the shared epoch and
+	 * does not walk the tree. Each agent still does its own full reset, but only when it
+	 * begins its first explore of the new trial, keeping its current algorithm, distribution
+	 * and scale. Agents the trial never reaches are never reset, and read as empty. The seed
+	 * of the trial is drawn here from {@link RandomProvider}, on the thread starting the
+	 * trial, and every agent derives the seed of its own generator from it.
+	 */
+	public void beginTrial()
+	{
+		trialEpoch.advance(RandomProvider.rand.nextLong());
+	}
+	
+	/**
+	 * Reset this agent if its state belongs to a previous trial
+	 */
+	private void checkEpoch()
+	{
+		if (isStale())
+		{
+			resetState();
+		}
+	}
+	
+	/**
+	 * Check if this agent's state belongs to a previous trial. Stale state has not been
+	 * reset yet, and the getters read it as empty instead.
+	 * @return <code>true</code> if this agent has not explored during the current trial
+	 */
+	private boolean isStale()
+	{
+		return epoch != trialEpoch.get();
+	}
+	
+	/**
+	 * Reset the per-trial state of this agent and tag it with the current epoch
+	 */
+	private void resetState()
+	{
+		final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		
 		agentMemory.reset();
+		
+		// this also starts the drift of every child over
 		totalPulls = 0;
 		totalTimeTaken = 0;
 		budget = 0;
+		initialBudget = 0;
+		algorithmInitialized = false;
+		bestArmPulls = 0;
+		regret = 0;
+		identifiedAt = -1;
+		reportedPulls = 0;
+		reportedBestArmPulls = 0;
+		reportedRegret = 0;
+		reportedIdentifiedAt = -1;
+		commitTraced = false;
+		random.setSeed(id ^ trialEpoch.getSeed());
 		
-		algorithm = algorithm.duplicate();
+		algorithm.reset();
+		
+		epoch = trialEpoch.get();
+		
+		if (Metrics.ENABLED)
+		{
+			Metrics.RESET_LATENCY.record(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Reset the state of this agent
+	 */
+	public void reset(RealDistribution distribution, double scale)
+	{
+		setDistribution(distribution);
+		setScale(scale);
+		resetState();
 	}
 	
 	/**
@@ -87,8 +531,11 @@ public class AgentSupplier extends Supplier
 	 */
 	public void reset(RealDistribution distribution, double scale, Algorithm newAlgorithm)
 	{
-		reset(distribution, scale);
 		this.algorithm = newAlgorithm;
+		this.batchAlgorithm = asBatchAlgorithm(newAlgorithm);
+		agentMemory.setObserver(asObservingAlgorithm(newAlgorithm));
+		this.selectLatency = Metrics.ENABLED ? Metrics.selectLatency(newAlgorithm) : null;
+		reset(distribution, scale);
 	}
 	
 	@Override
@@ -96,18 +543,72 @@ public class AgentSupplier extends Supplier
 	{		
 		// return the time our suppliers took in addition to our personal
 		// processing time
-		return explore(getCost() * budgetMultiplier) + sample();
+		return exploreUnits(supplyBudget) + sample();
 	}
-
+	
 	/**
-	 * Spend the budget as much as possible.  
+	 * Spend the budget as much as possible. Purchases from child agents are explored
+	 * iteratively using an explicit stack of agents rather than by recursing through
+	 * {@link #supply()}, so the depth of the tree is bounded only by memory.
 	 * @param budget The exploration budget
 	 * @return The time taken for all of our suppliers to complete delivery
 	 */
 	public double explore(double budget)
+	{
+		return exploreUnits(Budget.toUnits(budget));
+	}
+	
+	/**
+	 * Spend the budget as much as possible
+	 * @param budget The exploration budget, in {@link Budget} units
+	 * @return The time taken for all of our suppliers to complete delivery
+	 * @see #explore(double)
+	 */
+	private double exploreUnits(long budget)
+	{
+		final ArrayList<AgentSupplier> stack = exploreStack;
+		assert stack.isEmpty() : "explore is not reentrant";
+		
+		beginExplore(budget);
+		stack.add(this);
+		
+		while (true)
+		{
+			final AgentSupplier agent = stack.get(stack.size() - 1);
+			
+			// pull arms until a child agent must be explored or the budget is spent
+			final ArmMemory arm = agent.step();
+			
+			if (arm != null) // a purchase from a child agent, explore it first
+			{
+				final AgentSupplier child = (AgentSupplier)arm.getSupplier();
+				child.beginExplore(child.supplyBudget);
+				stack.add(child);
+			}
+			else // this agent's budget is spent
+			{
+				final double timeTaken = agent.endExplore();
+				stack.remove(stack.size() - 1);
+				
+				if (stack.isEmpty())
+				{
+					return timeTaken;
+				}
+				
+				// complete the parent's purchase, which also includes the child's processing time
+				stack.get(stack.size() - 1).completePull(timeTaken + agent.sample());
+			}
+		}
+	}
+	
+	/**
+	 * Begin spending a new budget
+	 * @param budget The exploration budget, in {@link Budget} units
+	 */
+	private void beginExplore(long budget)
 	{	
-		// this assumes all child arms have the same cost //TODO: unify cost
-		double cost = children.get(0).getCost();
+		// first explore this trial, discard the previous trial's state
+		checkEpoch();
 		
 		/*
 		 * I suspect that dynamically increasing the budget during the simulation
@@ -115,65 +616,511 @@ public class AgentSupplier extends Supplier
 		 * appear to assume that the total budget is initially known.
 		 */
 		this.budget += budget;
+		budgetThisExplore = this.budget;
+		
+		if (Metrics.ENABLED)
+		{
+			Metrics.EXPLORES.increment();
+		}
+		
+		if (Trace.ENABLED)
+		{
+			Trace.exploreStarted(this, Budget.toAmount(budget));
+		}
+		
+		// first explore this trial, let the algorithm prepare itself
+		if (!algorithmInitialized)
+		{
+			initialBudget = Budget.toAmount(budget);
+			
+			// resetting the memory turned the sketches off
+			if (sketchArms)
+			{
+				for (ArmMemory arm : agentMemory.indexedList)
+				{
+					arm.enableSketch();
+				}
+			}
+			
+			algorithm.init(this);
+			algorithmInitialized = true;
+		}
 		
 		// total time is the maximum of all of the times
 		// (imagine all purchases are made simultaneously
-		double maxTimeSpent = 0;
+		maxTimeSpent = 0;
 		
 		// actual total time spent this explore()
-		double totalTimeSpent = 0;
+		totalTimeSpent = 0;
 		
 		// number of pulls during this exploration
-		int pullsThisExplore = 0;
+		pullsThisExplore = 0;
 		
-		// while we have budget, explore
-		while(this.budget >= cost)
+		if (timeQuantile != null)
 		{
+			timeQuantile.clear();
+		}
+		
+		// no requests are waiting to be pulled
+		requestCount = 0;
+		nextRequest = 0;
+	}
+	
+	/**
+	 * Pull arms until either the budget is spent or a child agent must be explored to
+	 * complete a purchase. Purchases from leaf suppliers are completed immediately.
+	 * @return The arm of the child agent to explore, or <code>null</code> if the budget is spent.
+	 * In the former case the purchase must be finished with {@link #completePull(double)}.
+	 */
+	private ArmMemory step()
+	{
+		while (true)
+		{
+			// issue the requests the algorithm has already selected
+			while (nextRequest < requestCount)
+			{
+				if (!uniformCost)
+				{
+					pullRequests[nextRequest] = makeAffordable(pullRequests[nextRequest]);
+				}
+				
+				if (outstandingPurchases != null)
+				{
+					final ArmMemory arm = agentMemory.select(pullRequests[nextRequest]);
+					if (arm.getSupplier() instanceof AgentSupplier)
+					{
+						nextRequest++;
+						this.budget -= arm.getCostUnits();
+						purchaseAsync(arm);
+						continue;
+					}
+				}
+				
+				final ArmMemory arm = agentMemory.beginPull(pullRequests[nextRequest++]);
+				this.budget -= arm.getCostUnits();
+				
+				if (arm.getSupplier() instanceof AgentSupplier)
+				{
+					pendingArm = arm;
+					pendingBest = false;
+					return arm;
+				}
+				
+				// pull the arm
+				final double timeSpent = arm.getSupplier().supply();
+				agentMemory.endPull(arm, timeSpent);
+				recordTime(arm, timeSpent);
+			}
+			
+			// while we have budget, explore
+			if (this.budget < minimumCost)
+			{
+				if (outstandingPurchases != null)
+				{
+					// wait for every outstanding purchase
+					while (outstandingCount > 0)
+					{
+						completeOldestPurchase();
+					}
+				}
+				return null;
+			}
+			
 			// debug current arm memory state
 //			System.out.println(agentMemory);
 //			try {Thread.sleep(500);} catch (InterruptedException e){}
 			
-			// select an arm using our algorithm
-			int pullRequest = algorithm.getNextArm(this);
-			this.budget -= cost;
+			if (algorithm.isCommitted())
+			{
+				if (Trace.ENABLED && !commitTraced)
+				{
+					commitTraced = true;
+					Trace.phaseChanged(this, algorithm, "committed after " + totalPulls + " pulls");
+				}
+				
+				/*
+				 * The algorithm will request the best arm for the rest of the trial, so
+				 * stop consulting it and spend the rest of the budget on the best arm.
+				 */
+				final ArmMemory best = agentMemory.getBest();
+				final long bestCost = best.getCostUnits();
+				
+				if (!uniformCost && bestCost > this.budget)
+				{
+					// the best arm is out of reach, spend what is left on the best arm we can afford
+					pullRequests[0] = ArmPullRequest.get(agentMemory.getBestAffordable(this.budget));
+					requestCount = 1;
+					nextRequest = 0;
+					continue;
+				}
+				
+				if (agentMemory.isBestDeterministic())
+				{
+					// every remaining pull is known in advance, settle them all at once
+					int remainingPulls = Budget.affordablePulls(this.budget, bestCost);
+					this.budget -= remainingPulls * bestCost;
+					recordTimes(best, remainingPulls, agentMemory.pullBestDeterministic(remainingPulls));
+					continue;
+				}
+				
+				if (SupplyChainDriver.AGGREGATE_LEAF_PULLS && leafSuppliers
+						&& SupplyChainDriver.AGGREGATION == Aggregation.MEAN)
+				{
+					// collapse the remaining pulls into a single draw of their sum
+					int remainingPulls = Budget.affordablePulls(this.budget, bestCost);
+					this.budget -= remainingPulls * bestCost;
+					recordTimes(best, remainingPulls, agentMemory.pullBestAggregated(remainingPulls) / remainingPulls);
+					continue;
+				}
+				
+				this.budget -= bestCost;
+				
+				if (outstandingPurchases != null && best.getSupplier() instanceof AgentSupplier)
+				{
+					purchaseAsync(best);
+					continue;
+				}
+				else if (best.getSupplier() instanceof AgentSupplier)
+				{
+					pendingArm = best;
+					pendingBest = true;
+					return best;
+				}
+				
+				// pull the arm
+				final double timeSpent = best.getSupplier().supply();
+				agentMemory.endPullBest(best, timeSpent);
+				recordTime(best, timeSpent);
+				continue;
+			}
 			
-			// pull the arm
-			double timeSpent = agentMemory.pull(pullRequest);
-			totalPulls++;
-			pullsThisExplore++;
+			// select one or more arms using our algorithm, as many as even the priciest arm allows
+			final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+			final int affordablePulls = Budget.affordablePulls(this.budget, maximumCost);
+			if (batchAlgorithm == null || affordablePulls == 0)
+			{
+				pullRequests[0] = algorithm.getNextArm(this);
+				requestCount = 1;
+			}
+			else
+			{
+				requestCount = batchAlgorithm.getNextArms(this, pullRequests,
+						Math.min(affordablePulls, PULL_BATCH_SIZE));
+			}
+			nextRequest = 0;
 			
-			// maintain running maximum
-			if (timeSpent > maxTimeSpent)
+			if (Metrics.ENABLED)
 			{
-				maxTimeSpent = timeSpent;
+				selectLatency.record(System.nanoTime() - start);
 			}
 			
-			// maintain running sum
-			totalTimeSpent += timeSpent;
+			if (SupplyChainDriver.PARALLEL_SUBTREES && !leafSuppliers && requestCount > 1)
+			{
+				supplyInParallel();
+			}
+		}
+	}
+	
+	/**
+	 * Make the purchases at the start of the current batch of requests in parallel. Only
+	 * the leading run of indexed requests for child agents is eligible: a ranked request
+	 * depends on the results of every pull before it. Purchases from the same child are
+	 * made in order, and the results are recorded in the order they were requested.
+	 */
+	private void supplyInParallel()
+	{
+		// find the purchases that can be made without knowing the results of the others
+		int end = 0;
+		while (end < requestCount && !ArmPullRequest.isUseRankedList(pullRequests[end])
+				&& children.get(ArmPullRequest.getIndexInList(pullRequests[end])) instanceof AgentSupplier)
+		{
+			end++;
 		}
 		
-		// budget should never go negative
-		assert this.budget >= 0.0;
+		if (end < 2) return; // nothing to run in parallel
 		
-		// budget is quantized
-		assert this.budget == 0.0;
+		if (parallelTimes == null)
+		{
+			parallelTimes = new double[PULL_BATCH_SIZE];
+			supplyTasks = new SupplyTask[children.size()];
+			activeTasks = new ArrayList<SupplyTask>(children.size());
+			taskActive = new boolean[children.size()];
+		}
 		
+		// one task per child, making that child's purchases in order
+		final ArrayList<SupplyTask> tasks = activeTasks;
+		tasks.clear();
+		for (int request = 0; request < end; request++)
+		{
+			final int index = ArmPullRequest.getIndexInList(pullRequests[request]);
+			if (!taskActive[index])
+			{
+				if (supplyTasks[index] == null)
+				{
+					supplyTasks[index] = new SupplyTask((AgentSupplier)children.get(index), PULL_BATCH_SIZE, parallelTimes);
+				}
+				taskActive[index] = true;
+				tasks.add(supplyTasks[index]);
+			}
+		}
 		
-		/* 
-		 * TODO: re-enable this?
-		 * Returning the maximum of all the times is seriously messing with things, disabling for now
-		 */
+		for (int request = 0; request < end; request++)
+		{
+			taskActive[ArmPullRequest.getIndexInList(pullRequests[request])] = false;
+		}
+		
+		if (tasks.size() < 2) return; // only one child, nothing to run in parallel
+		
+		// only reseed the tasks once they are sure to run, a batch left to run in order draws no seeds
+		for (SupplyTask task : tasks)
+		{
+			task.restart();
+		}
+		for (int request = 0; request < end; request++)
+		{
+			supplyTasks[ArmPullRequest.getIndexInList(pullRequests[request])].add(request);
+		}
+		
+		SupplyExecutor.invokeAll(tasks);
+		
+		// record the results in the order the algorithm requested them
+		for (int request = 0; request < end; request++)
+		{
+			final ArmMemory arm = agentMemory.beginPull(pullRequests[request]);
+			this.budget -= arm.getCostUnits();
+			agentMemory.endPull(arm, parallelTimes[request]);
+			recordTime(arm, parallelTimes[request]);
+		}
+		nextRequest = end;
+	}
+	
+	/**
+	 * Make sure a request can be paid for with what is left of the budget
+	 * @param request the arm pull request the algorithm made
+	 * @return the request, or a request for the best-ranked arm the budget can afford instead
+	 */
+	private int makeAffordable(int request)
+	{
+		if (agentMemory.select(request).getCostUnits() <= this.budget)
+		{
+			return request;
+		}
+		
+		return ArmPullRequest.get(agentMemory.getBestAffordable(this.budget));
+	}
+	
+	/**
+	 * Start an asynchronous purchase from a child agent. If the child is still working on
+	 * an earlier purchase, or too many purchases are outstanding, older purchases are
+	 * completed first.
+	 * @param arm the arm of the child agent to buy from
+	 */
+	private void purchaseAsync(ArmMemory arm)
+	{
+		final AgentSupplier child = (AgentSupplier)arm.getSupplier();
+		
+		// purchases from the same child must not overlap
+		while (child.purchasing)
+		{
+			completeOldestPurchase();
+		}
+		
+		if (outstandingCount == outstandingPurchases.length)
+		{
+			completeOldestPurchase();
+		}
+		
+		child.purchasing = true;
+		child.purchase.start();
+		outstandingPurchases[(oldestPurchase + outstandingCount++) % outstandingPurchases.length] = arm;
+	}
+	
+	/**
+	 * Wait for the oldest outstanding asynchronous purchase and record its result
+	 */
+	private void completeOldestPurchase()
+	{
+		final ArmMemory arm = outstandingPurchases[oldestPurchase];
+		outstandingPurchases[oldestPurchase] = null;
+		oldestPurchase = (oldestPurchase + 1) % outstandingPurchases.length;
+		outstandingCount--;
+		
+		final AgentSupplier child = (AgentSupplier)arm.getSupplier();
+		final double timeSpent = child.purchase.finish();
+		child.purchasing = false;
+		
+		agentMemory.recordPull(arm, timeSpent);
+		recordTime(arm, timeSpent);
+	}
+	
+	/**
+	 * Finish the purchase from a child agent that was started by {@link #step()}
+	 * @param timeSpent the time the child agent took to supply us
+	 */
+	private void completePull(double timeSpent)
+	{
+		if (pendingBest)
+		{
+			agentMemory.endPullBest(pendingArm, timeSpent);
+		}
+		else
+		{
+			agentMemory.endPull(pendingArm, timeSpent);
+		}
+		recordTime(pendingArm, timeSpent);
+		pendingArm = null;
+	}
+	
+	/**
+	 * Finish spending the budget
+	 * @return The time taken for all of our suppliers to complete delivery
+	 */
+	private double endExplore()
+	{
+		// budget should never go negative, and what is left cannot buy anything
+		assert this.budget >= 0 && this.budget < minimumCost : this.budget;
+		
+		// with a single cost, every unit spent went to a pull
+		assert !uniformCost || pullsThisExplore * minimumCost == budgetThisExplore - this.budget
+				: pullsThisExplore + ", " + budgetThisExplore + ", " + this.budget;
+		
+		final double timeTaken;
+		switch (SupplyChainDriver.AGGREGATION)
+		{
+			case MAX:
+				timeTaken = maxTimeSpent;
+				break;
+			case PERCENTILE:
+				timeTaken = timeQuantile.get();
+				break;
+			default:
+				timeTaken = totalTimeSpent / pullsThisExplore;
+				break;
+		}
 		
 		// remember how much time it has taken to get supplied
-		//totalTimeTaken += maxTimeSpent; // disabled for now
-		totalTimeTaken += totalTimeSpent / pullsThisExplore;
+		totalTimeTaken += timeTaken;
+		
+		if (Trace.ENABLED)
+		{
+			Trace.exploreEnded(this, timeTaken);
+		}
+		
+		if (regretTally != null)
+		{
+			reportRegret();
+		}
+		
+		if (progress != null)
+		{
+			progress.samplesDrawn(pullsThisExplore);
+		}
+		
+		return timeTaken;
+	}
+	
+	/**
+	 * Record the time taken by a single pull during the current explore
+	 * @param arm the arm pulled
+	 * @param timeSpent the time the pulled arm took to supply us
+	 */
+	private void recordTime(ArmMemory arm, double timeSpent)
+	{
+		if (Metrics.ENABLED)
+		{
+			Metrics.PULLS.increment();
+		}
+		
+		totalPulls++;
+		pullsThisExplore++;
+		
+		// maintain running maximum
+		if (timeSpent > maxTimeSpent)
+		{
+			maxTimeSpent = timeSpent;
+		}
+		
+		// maintain running sum
+		totalTimeSpent += timeSpent;
+		
+		if (timeQuantile != null)
+		{
+			timeQuantile.add(timeSpent);
+		}
+		
+		recordRegret(arm.getSupplier(), 1);
+	}
+	
+	/**
+	 * Record several pulls of the same arm during the current explore that all took the same time
+	 * @param arm the arm pulled
+	 * @param pulls the number of pulls
+	 * @param timeSpent the time each pull took
+	 */
+	private void recordTimes(ArmMemory arm, int pulls, double timeSpent)
+	{
+		if (Metrics.ENABLED)
+		{
+			Metrics.PULLS.add(pulls);
+		}
+		
+		totalPulls += pulls;
+		pullsThisExplore += pulls;
+		
+		// maintain running maximum
+		if (timeSpent > maxTimeSpent)
+		{
+			maxTimeSpent = timeSpent;
+		}
+		
+		// maintain running sum
+		totalTimeSpent += pulls * timeSpent;
+		
+		if (timeQuantile != null)
+		{
+			timeQuantile.add(timeSpent, pulls);
+		}
+		
+		recordRegret(arm.getSupplier(), pulls);
+	}
+	
+	/**
+	 * Count pulls towards this trial's regret. The pulls must already be counted in
+	 * {@link #totalPulls} and the arm re-ranked.
+	 * @param supplier the supplier pulled
+	 * @param pulls the number of pulls
+	 */
+	private void recordRegret(Supplier supplier, int pulls)
+	{
+		if (supplier.isBestArm())
+		{
+			bestArmPulls += pulls;
+		}
 		
-		// assert that no double rounding errors have occurred
-		assert (double)pullsThisExplore == budget : pullsThisExplore + ", " + budget;
+		regret += pulls * (supplier.getMeanTime() - bestMeanTime);
 		
-		//return maxTimeSpent; // disabled for now
+		if (!agentMemory.checkOptimal())
+		{
+			identifiedAt = -1;
+		}
+		else if (identifiedAt < 0) // the best arm has just risen to the top
+		{
+			identifiedAt = totalPulls - pulls + 1;
+		}
+	}
+	
+	/**
+	 * Roll what changed since the last explore into {@link #regretTally}
+	 */
+	private void reportRegret()
+	{
+		regretTally.record(depth, reportedPulls == 0 && totalPulls > 0, totalPulls - reportedPulls,
+				bestArmPulls - reportedBestArmPulls, regret - reportedRegret, reportedIdentifiedAt, identifiedAt);
 		
-		return totalTimeSpent / pullsThisExplore;
+		reportedPulls = totalPulls;
+		reportedBestArmPulls = bestArmPulls;
+		reportedRegret = regret;
+		reportedIdentifiedAt = identifiedAt;
 	}
 	
 	@Override
@@ -187,34 +1134,97 @@ public class AgentSupplier extends Supplier
 	{
 		return getChildren() == null;
 	}
-
+	
 	/**
-	 * Get the agent's memory of each arm's performance
+	 * Get this agent's own random number generator, for its algorithm to draw from instead
+	 * of {@link RandomProvider}. It is reseeded at the start of every trial from the agent's
+	 * id and the trial's seed, so a run is reproducible whichever thread the agent explores on.
+	 * @return this agent's random number generator
+	 */
+	public Random getRandom()
+	{
+		return random;
+	}
+	
+	/**
+	 * Get the agent's memory of each arm's performance. If the agent has not explored
+	 * during the current trial, this still holds the memory of the last trial it did.
 	 * @return The agent's memory of each arm's performance
 	 */
 	public AgentMemory getAgentMemory()
 	{
 		return agentMemory;
 	}
-
+	
 	/**
 	 * Get the total amount of time this agent has taken
 	 * @return The total amount of time this agent has taken
 	 */
 	public double getTotalTimeTaken()
 	{
-		return totalTimeTaken;
+		return isStale() ? 0 : totalTimeTaken;
 	}
-
+	
+	/**
+	 * Get the initial budget of this agent, which is the budget given to its first
+	 * explore this trial. For the root agent this is the entire budget. For other agents
+	 * it is the budget of a single {@link #supply()}, which is an estimate of what each
+	 * later purchase will provide.
+	 * @return The initial budget of this agent, or 0 if it has not explored this trial
+	 */
+	public double getInitialBudget()
+	{
+		return isStale() ? 0 : initialBudget;
+	}
+	
 	/**
 	 * Get the number of times the agent has pulled an arm
 	 * @return The number of times the agent has pulled an arm
 	 */
 	public int getTotalPulls()
 	{
-		return totalPulls;
+		return isStale() ? 0 : totalPulls;
 	}
-
+	
+	/**
+	 * Get the number of times this trial the agent has pulled the child marked as the best arm
+	 * @return The number of pulls of the best arm
+	 */
+	public int getBestArmPulls()
+	{
+		return isStale() ? 0 : bestArmPulls;
+	}
+	
+	/**
+	 * Get the regret of this agent this trial: the sum over its pulls of the mean time of the
+	 * arm pulled, less the mean time of the child marked as the best arm
+	 * @return The regret of this agent
+	 */
+	public double getRegret()
+	{
+		return isStale() ? 0 : regret;
+	}
+	
+	/**
+	 * Get the pull, counting from 1, from which the top-ranked arm has been the child marked
+	 * as the best arm
+	 * @return The pull at which the best arm was identified, or -1 if the top-ranked arm is
+	 * not the best arm
+	 */
+	public int getIdentifiedAt()
+	{
+		return isStale() ? -1 : identifiedAt;
+	}
+	
+	/**
+	 * Get the depth of this agent in its tree
+	 * @return The number of agents above this agent, 0 for the root
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+	
 	/**
 	 * Get the budget multiplier of this agent. For example, if the agent is given enough
 	 * money for 1 pull and the multiplier is 5, the agent can actually perform 5 pulls.
@@ -225,7 +1235,7 @@ public class AgentSupplier extends Supplier
 	{
 		return budgetMultiplier;
 	}
-
+	
 	/**
 	 * Check if this agent is the root agent in the tree
 	 * @return <code>true</code> if this agent is the root agent in the tree, 
@@ -0,0 +1,19 @@
+package com.zkxs.supplychain;
+/**
+ * How an agent combines the times of the purchases it makes during one explore into the
+ * time it reports to its parent
+ */
+public enum Aggregation
+{
+	/** The average time of the purchases (purchases are made one after another, on average) */
+	MEAN,
+	
+	/** The longest time of any purchase (all purchases are made simultaneously) */
+	MAX,
+	
+	/**
+	 * A percentile of the times of the purchases, set by
+	 * {@link SupplyChainDriver#AGGREGATION_PERCENTILE}
+	 */
+	PERCENTILE
+}
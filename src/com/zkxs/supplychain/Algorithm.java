@@ -9,6 +9,15 @@ package com.zkxs.supplychain;
  */
 public interface Algorithm
 {	
+	/**
+	 * Prepare this algorithm for a trial. The agent calls this exactly once per trial,
+	 * before {@link #getNextArm(AgentSupplier)} is ever called and after the agent's
+	 * initial budget ({@link AgentSupplier#getInitialBudget()}) is known. Buffers should
+	 * be allocated or sized here so that getNextArm does not need initialization checks.
+	 * @param agent The agent this algorithm is working for
+	 */
+	public void init(AgentSupplier agent);
+	
 	/**
 	 * Select an arm to pull
 	 * @param agent The agent this algorithm is working for
@@ -24,10 +33,32 @@ public interface Algorithm
 	 */
 	public Algorithm duplicate();
 	
+	/**
+	 * Reinitialize this algorithm in place so that it behaves exactly like a fresh
+	 * {@link #duplicate()}. This allows the same instance to be reused across trials
+	 * without allocating a new algorithm for every agent.
+	 */
+	public void reset();
+	
 	/**
 	 * Check if this algorithm requires the budget to be predetermined.
 	 * @return <code>true</code> if this algorithm does not support dynamic budgeting, 
 	 * <code>false</code> otherwise.
 	 */
 	public boolean requiresInitialBudget();
+	
+	/**
+	 * Check if this algorithm has committed to the best arm. Once committed, an algorithm
+	 * will request the top-ranked arm for every remaining pull this trial, so the agent
+	 * stops calling {@link #getNextArm(AgentSupplier)} and pulls the top-ranked arm directly.
+	 * @return <code>true</code> if every remaining request this trial will be for the
+	 * top-ranked arm, <code>false</code> otherwise.
+	 */
+	public boolean isCommitted();
+	
+	/**
+	 * Get a short, human readable name for this algorithm, including its parameters
+	 * @return a short, human readable name for this algorithm
+	 */
+	public String getName();
 }
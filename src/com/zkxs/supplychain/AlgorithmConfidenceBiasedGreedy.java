@@ -14,9 +14,6 @@ public class AlgorithmConfidenceBiasedGreedy implements Algorithm
 	/** The number of samples required to build an idea of the distribution of the current best arm */
 	private final int initialExplorationSize;
 	
-	/** Has this algorithm been initialized? */
-	private boolean initialized = false;
-	
 	/** Are we in the initial exploration phase? (Pulling each arm once) */
 	private boolean initialExplore = true;
 	
@@ -34,21 +31,19 @@ public class AlgorithmConfidenceBiasedGreedy implements Algorithm
 	}
 	
 	@Override
-	public int getNextArm(AgentSupplier agent)
+	public void init(AgentSupplier agent)
 	{
-		// if this is the first time this method is called, initialize things
-		if (!initialized)
+		// for each arm in the agent's ArmMemory
+		for (ArmMemory am : agent.getAgentMemory().indexedList)
 		{
-			// for each arm in the agent's ArmMemory
-			for (ArmMemory am : agent.getAgentMemory().indexedList)
-			{
-				// enable sample tracking in this ArmMemory object
-				am.enable();
-			}
-			
-			initialized = true;
-		} // end of initialization block
-		
+			// enable sample tracking in this ArmMemory object
+			am.enable();
+		}
+	}
+	
+	@Override
+	public int getNextArm(AgentSupplier agent)
+	{
 		// if initial explore, pull each arm once
 		if (initialExplore)
 		{
@@ -131,7 +126,7 @@ public class AlgorithmConfidenceBiasedGreedy implements Algorithm
 			 * proportionally to the probability that the current arm is not
 			 * the best arm.
 			 */
-			if (RandomProvider.rand.nextDouble() < probabilityOfExplore)
+			if (agent.getRandom().nextDouble() < probabilityOfExplore)
 			{
 				// explore the arm most likely to usurp the current best arm
 				final int request = ArmPullRequest.get(maxNonBestArm);
@@ -155,12 +150,31 @@ public class AlgorithmConfidenceBiasedGreedy implements Algorithm
 		return new AlgorithmConfidenceBiasedGreedy(initialExplorationSize);
 	}
 	
+	@Override
+	public void reset()
+	{
+		initialExplore = true;
+		currentArmIndex = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "CBG (" + initialExplorationSize + ")";
+	}
+	
 	private void printTrace(AgentSupplier agent, int request, Reason reason)
 	{
 		final ArrayList<Supplier> armsReal = agent.getChildren();
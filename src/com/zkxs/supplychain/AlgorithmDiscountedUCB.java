@@ -0,0 +1,190 @@
+package com.zkxs.supplychain;
+/**
+ * Discounted UCB (Garivier and Moulines, 2008), for suppliers that drift. Each pull discounts
+ * the weight of every earlier pull by gamma, so the averages follow recent behavior. Rewards
+ * are defined as for {@link AlgorithmUCB_BV1}: the inverse of the time taken, per unit of cost.
+ * <br /><br />
+ * Rather than discounting every arm after every pull, new pulls are given ever larger weights
+ * and the weights are only scaled back down when they grow too large, so recording a pull
+ * takes O(1) amortized time.
+ */
+public class AlgorithmDiscountedUCB implements ObservingAlgorithm
+{
+	/** Exploration constant of the confidence bonus */
+	private static final double XI = 0.6;
+	
+	/** Once the weight of a new pull exceeds this, every weight is scaled back down */
+	private static final double RENORMALIZE = 1e100;
+	
+	/** How much each pull discounts the weight of earlier pulls, between 0 and 1 */
+	private final double gamma;
+	
+	/** The inflated, discounted number of pulls of each arm */
+	private double[] counts;
+	
+	/** The inflated, discounted sum of the times of each arm */
+	private double[] sums;
+	
+	/** The inflated, discounted number of pulls of all arms */
+	private double totalCount;
+	
+	/** The weight given to the next pull. Actual weights are inflated weights divided by this. */
+	private double inflation;
+	
+	/** The average reward of each arm, inverse to its average time and per unit of cost */
+	private double[] rewards;
+	
+	/** The number of arms pulled in the initial pass */
+	private int initialPulls;
+	
+	/**
+	 * Construct a new discounted UCB algorithm
+	 * @param gamma how much each pull discounts the weight of earlier pulls, greater than 0
+	 * and at most 1
+	 */
+	public AlgorithmDiscountedUCB(double gamma)
+	{
+		if (!(gamma > 0 && gamma <= 1))
+		{
+			throw new IllegalArgumentException("Discount must be greater than 0 and at most 1");
+		}
+		
+		this.gamma = gamma;
+		initialPulls = 0;
+	}
+	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		final int size = agent.getAgentMemory().size();
+		
+		// one slot per arm, reused across trials if the arm count is unchanged
+		if (counts == null || counts.length != size)
+		{
+			counts = new double[size];
+			sums = new double[size];
+			rewards = new double[size];
+		}
+		
+		for (int i = 0; i < size; i++)
+		{
+			counts[i] = 0;
+			sums[i] = 0;
+		}
+		
+		totalCount = 0;
+		inflation = 1;
+	}
+	
+	@Override
+	public int getNextArm(AgentSupplier agent)
+	{
+		final AgentMemory memory = agent.getAgentMemory();
+		
+		// if each arm has not yet been pulled once
+		if (initialPulls < counts.length)
+		{
+			// pull the next arm
+			return ArmPullRequest.get(initialPulls++, false);
+		}
+		
+		// the discounted number of pulls of all arms
+		final double logTotal = Math.log(Math.max(totalCount / inflation, 1));
+		
+		// the largest average reward bounds the scale of the rewards
+		double maxReward = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] == 0) // never observed, so it could be anything
+			{
+				return ArmPullRequest.get(i, false);
+			}
+			
+			rewards[i] = counts[i] / sums[i] / memory.indexedList.get(i).getCost();
+			maxReward = Math.max(maxReward, rewards[i]);
+		}
+		
+		// find the arm with the highest index
+		int maxIndex = 0;
+		double maxArmIndex = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < counts.length; i++)
+		{
+			final double armIndex = rewards[i]
+					+ 2 * maxReward * Math.sqrt(XI * logTotal / (counts[i] / inflation));
+					
+			if (armIndex > maxArmIndex)
+			{
+				maxArmIndex = armIndex;
+				maxIndex = i;
+			}
+		}
+		
+		return ArmPullRequest.get(maxIndex, false);
+	}
+	
+	@Override
+	public void observe(int arm, int pulls, double time)
+	{
+		for (int i = 0; i < pulls; i++)
+		{
+			observe(arm, time);
+		}
+	}
+	
+	/**
+	 * Record a pull, discounting every earlier pull
+	 * @param arm the index of the arm pulled
+	 * @param time the time the pull took
+	 */
+	private void observe(int arm, double time)
+	{
+		// inflating the new pull is the same as discounting all of the others
+		inflation /= gamma;
+		counts[arm] += inflation;
+		sums[arm] += inflation * time;
+		totalCount += inflation;
+		
+		if (inflation > RENORMALIZE)
+		{
+			for (int i = 0; i < counts.length; i++)
+			{
+				counts[i] /= inflation;
+				sums[i] /= inflation;
+			}
+			totalCount /= inflation;
+			inflation = 1;
+		}
+	}
+	
+	@Override
+	public Algorithm duplicate()
+	{
+		return new AlgorithmDiscountedUCB(gamma);
+	}
+	
+	@Override
+	public void reset()
+	{
+		// the sums are cleared in init, so they can be kept
+		initialPulls = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+	
+	@Override
+	public boolean requiresInitialBudget()
+	{
+		return false;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "D-UCB (" + gamma + ")";
+	}
+	
+}
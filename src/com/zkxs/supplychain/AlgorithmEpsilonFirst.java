@@ -4,11 +4,8 @@ package com.zkxs.supplychain;
  * is depleted, then exploit.
  * @author Michael Ripley (<a href="mailto:michael-ripley@utulsa.edu">michael-ripley@utulsa.edu</a>) Feb 9, 2014
  */
-public class AlgorithmEpsilonFirst implements Algorithm
+public class AlgorithmEpsilonFirst implements BatchAlgorithm
 {
-	/** The cost of pulling an arm, assuming all arms have the same cost */
-	private final static double COST = SupplyChainDriver.COST;
-	
 	/** the entire budget the agent has */
 	private final double initialBudget;
 	
@@ -21,6 +18,9 @@ public class AlgorithmEpsilonFirst implements Algorithm
 	/** Current index in the list of possible arms */
 	private int index;
 	
+	/** The cost of the cheapest arm. Exploration ends when it can no longer be afforded. */
+	private double minimumCost;
+	
 	/**
 	 * Construct a new epsilon-first algorithm
 	 * @param initialBudget the entire budget the agent has
@@ -35,10 +35,16 @@ public class AlgorithmEpsilonFirst implements Algorithm
 		index = 0;
 	}
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		minimumCost = agent.getAgentMemory().getMinimumCost();
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
-		if (explorationBudget < COST) // if we are done exploring
+		if (explorationBudget < minimumCost) // if we are done exploring
 		{
 			// pull the best arm every time
 			return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
@@ -50,21 +56,67 @@ public class AlgorithmEpsilonFirst implements Algorithm
 		}
 		
 		// at this point it is safe to pull arm@index
-		explorationBudget -= COST; // decrement budget ASSUMES ALL SUPPLIERS HAVE THE SAME COST
+		explorationBudget -= agent.getAgentMemory().indexedList.get(index).getCost();
 		return ArmPullRequest.get(index++, false);
 		// also increment index afterwards with the post-increment operator
 	}
 	
+	@Override
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests)
+	{
+		final int size = agent.getAgentMemory().size();
+		int count = 0;
+		
+		// the exploration sweep does not depend on the results of the pulls
+		while (count < maxRequests && explorationBudget >= minimumCost)
+		{
+			if (index == size) // then we must begin a new pass
+			{
+				index = 0;
+			}
+			
+			explorationBudget -= agent.getAgentMemory().indexedList.get(index).getCost();
+			requests[count++] = ArmPullRequest.get(index++, false);
+		}
+		
+		// after that, pull the best arm every time
+		while (count < maxRequests)
+		{
+			requests[count++] = ArmPullRequest.get(size - 1, true);
+		}
+		
+		return count;
+	}
+	
 	@Override
 	public Algorithm duplicate()
 	{
 		return new AlgorithmEpsilonFirst(initialBudget, epsilon);
 	}
 	
+	@Override
+	public void reset()
+	{
+		explorationBudget = initialBudget * epsilon;
+		index = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return explorationBudget < minimumCost;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return true;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "E-First (" + epsilon + ")";
+	}
+	
 }
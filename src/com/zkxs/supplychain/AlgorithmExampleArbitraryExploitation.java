@@ -9,7 +9,7 @@ public class AlgorithmExampleArbitraryExploitation implements Algorithm
 	/** The index of our favorite arm */
 	int favoriteArmIndex;
 	
-	/** Has the first pull been performed? */
+	/** Has the favorite arm not yet been chosen this trial? */
 	boolean firstPull;
 	
 	ArmMemory fave;
@@ -24,19 +24,20 @@ public class AlgorithmExampleArbitraryExploitation implements Algorithm
 		firstPull = true;
 	}
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		favoriteArmIndex = agent.getRandom().nextInt(agent.getAgentMemory().size());
+		firstPull = false;
+//		System.out.println("arb " + favoriteArmIndex + "," + agent.getAgentMemory().indexedList.get(favoriteArmIndex).getSupplier().isBestArm());
+		fave = agent.getAgentMemory().indexedList.get(favoriteArmIndex);
+		lastMean = fave.getSupplier().getMeanTime();
+		id = agent.id;
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
-		if (firstPull)
-		{
-			favoriteArmIndex = RandomProvider.rand.nextInt(agent.getAgentMemory().size());
-			firstPull = false;
-//			System.out.println("arb " + favoriteArmIndex + "," + agent.getAgentMemory().indexedList.get(favoriteArmIndex).getSupplier().isBestArm());
-			fave = agent.getAgentMemory().indexedList.get(favoriteArmIndex);
-			lastMean = fave.getSupplier().getMeanTime();
-			id = agent.id;
-		}
-		
 		assert agent.id == id;
 		assert !firstPull;
 		assert fave.getSupplier().getMeanTime() == lastMean;
@@ -51,10 +52,29 @@ public class AlgorithmExampleArbitraryExploitation implements Algorithm
 		return new AlgorithmExampleArbitraryExploitation();
 	}
 
+	@Override
+	public void reset()
+	{
+		firstPull = true;
+	}
+
+	@Override
+	public boolean isCommitted()
+	{
+		// the favorite arm is not necessarily the best arm
+		return false;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
-	}	
-
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "(arbitrary)";
+	}
+	
 }
@@ -6,10 +6,16 @@ package com.zkxs.supplychain;
 public class AlgorithmExampleRandom implements Algorithm
 {
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		// nothing to prepare
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
-		return ArmPullRequest.get(RandomProvider.rand.nextInt(agent.getAgentMemory().size()), true);
+		return ArmPullRequest.get(agent.getRandom().nextInt(agent.getAgentMemory().size()), true);
 	}
 
 	@Override
@@ -18,10 +24,28 @@ public class AlgorithmExampleRandom implements Algorithm
 		return new AlgorithmExampleRandom();
 	}
 
+	@Override
+	public void reset()
+	{
+		// this algorithm has no state
+	}
+
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "(random)";
+	}
+	
 }
@@ -4,14 +4,14 @@ package com.zkxs.supplychain;
  * is depleted, then exploit.
  * @author Michael Ripley (<a href="mailto:michael-ripley@utulsa.edu">michael-ripley@utulsa.edu</a>) Feb 9, 2014
  */
-public class AlgorithmGreedy implements Algorithm
+public class AlgorithmGreedy implements BatchAlgorithm
 {
-	/** The cost of pulling an arm, assuming all arms have the same cost */
-	private final static double COST = SupplyChainDriver.COST;
-	
 	/** Current index in the list of possible arms */
 	private int index;
 	
+	/** The number of arms the agent has */
+	private int armCount;
+	
 	/**
 	 * Construct a new epsilon-first algorithm
 	 * @param initialBudget the entire budget the agent has
@@ -22,6 +22,12 @@ public class AlgorithmGreedy implements Algorithm
 		index = 0;
 	}
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		armCount = agent.getAgentMemory().size();
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
@@ -36,16 +42,55 @@ public class AlgorithmGreedy implements Algorithm
 		// also increment index afterwards with the post-increment operator
 	}
 	
+	@Override
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests)
+	{
+		final int size = agent.getAgentMemory().size();
+		int count = 0;
+		
+		// the rest of the initial pass is known in advance
+		while (count < maxRequests && index < size)
+		{
+			requests[count++] = ArmPullRequest.get(index++, false);
+		}
+		
+		// after that, pull the best arm every time
+		while (count < maxRequests)
+		{
+			requests[count++] = ArmPullRequest.get(size - 1, true);
+		}
+		
+		return count;
+	}
+	
 	@Override
 	public Algorithm duplicate()
 	{
 		return new AlgorithmGreedy();
 	}
 	
+	@Override
+	public void reset()
+	{
+		index = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return index == armCount;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "greedy";
+	}
+	
 }
@@ -8,17 +8,14 @@ package com.zkxs.supplychain;
  */
 public class AlgorithmKDE implements Algorithm
 {
-	/** The cost of pulling an arm, assuming all arms have the same cost */
-	private final static double COST = SupplyChainDriver.COST;
-	
 	/** the entire budget the agent has */
 	private final double initialBudget;
 	
 	/** Percentage of budget to devote to exploration */
 	private final double epsilon;
 	
-	/** The the number of times to pull arms */
-	private final int gamma;
+	/** The the number of times to pull arms, which depends on the cost of the arms */
+	private int gamma;
 	
 	/** Current index in the list of possible arms */
 	private int index;
@@ -35,12 +32,18 @@ public class AlgorithmKDE implements Algorithm
 	{
 		this.initialBudget = initialBudget;
 		this.epsilon = epsilon;
-		this.gamma = (int)(initialBudget * epsilon / COST);
 		
 		index = 0;
 		pulls = 0;
 	}
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		// an exploration sweep pulls every arm equally, so it costs the average arm cost per pull
+		gamma = (int)(initialBudget * epsilon / agent.getAgentMemory().getMeanCost());
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
@@ -49,11 +52,11 @@ public class AlgorithmKDE implements Algorithm
 			
 			// if random number 0-1  <=  probability of exploration
 			// (essentially, if we "roll" an exploration)
-			if (RandomProvider.rand.nextDouble() <= Math.min(1, gamma / pulls++))
+			if (agent.getRandom().nextDouble() <= Math.min(1, gamma / pulls++))
 			{	// then explore
 				
 				// pull a random arm
-				return ArmPullRequest.get(RandomProvider.rand.nextInt(agent.getAgentMemory().size()), true);
+				return ArmPullRequest.get(agent.getRandom().nextInt(agent.getAgentMemory().size()), true);
 			}
 			else // exploit
 			{
@@ -81,10 +84,30 @@ public class AlgorithmKDE implements Algorithm
 		return new AlgorithmKDE(initialBudget, epsilon);
 	}
 	
+	@Override
+	public void reset()
+	{
+		index = 0;
+		pulls = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		// there is always a chance of exploring
+		return false;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return true;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "KDE (" + epsilon + ")";
+	}
+	
 }
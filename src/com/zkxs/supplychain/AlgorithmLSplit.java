@@ -3,7 +3,7 @@ package com.zkxs.supplychain;
  * The l-split algorithm successively eliminates (1 - 1 / l)th of arms after each pass
  * @author Michael Ripley (<a href="mailto:michael-ripley@utulsa.edu">michael-ripley@utulsa.edu</a>) Jan 28, 2014
  */
-public class AlgorithmLSplit implements Algorithm
+public class AlgorithmLSplit implements BatchAlgorithm
 {
 	/** The percentage of the arms that are feasible */
 	private double feasible;
@@ -33,10 +33,17 @@ public class AlgorithmLSplit implements Algorithm
 		this.lValue = lValue;
 		this.threshold = 1 - 1 / lValue;
 		this.index = 0;
-		this.rankedListSnapshot = null; // will be initialized on first call to algorithm
+		this.rankedListSnapshot = new SortedList<ArmMemory>(); // will be filled by init()
 		this.exploitationMode = false;
 	}
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		// take the first snapshot
+		agent.getAgentMemory().getRankedListSnapshot(rankedListSnapshot);
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
@@ -45,15 +52,10 @@ public class AlgorithmLSplit implements Algorithm
 			// pull the best arm every time
 			return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
 		}
-		else if (rankedListSnapshot == null) // first run, initialize
-		{
-			// take the first snapshot
-			rankedListSnapshot = agent.getAgentMemory().getRankedListSnapshot();
-		}
 		else if (index >= rankedListSnapshot.size()) // then we must begin a new pass
 		{
 			// get a new snapshot of the arm rank
-			rankedListSnapshot = agent.getAgentMemory().getRankedListSnapshot();
+			agent.getAgentMemory().getRankedListSnapshot(rankedListSnapshot);
 			
 			// perform a split
 			feasible *= threshold;
@@ -61,6 +63,11 @@ public class AlgorithmLSplit implements Algorithm
 			// set initial index based off the now-infeasible portion of the list
 			index = (int)(rankedListSnapshot.size() - rankedListSnapshot.size() * feasible);
 			
+			if (Trace.ENABLED)
+			{
+				Trace.phaseChanged(agent, this, "pass with " + (rankedListSnapshot.size() - index) + " feasible arms");
+			}
+			
 			if (index >= rankedListSnapshot.size() - 1) // then we have 1 or less feasible arms left
 			{
 //				if (!agent.getAgentMemory().checkOptimal())
@@ -69,9 +76,8 @@ public class AlgorithmLSplit implements Algorithm
 				// begin exploiting one arm, allowing much of this logic to be skipped
 				exploitationMode = true;
 				
-				// this is no longer needed, set to null so the garbage collector can
-				// do its work
-				rankedListSnapshot = null;
+				// this is no longer needed, but keep the storage for the next trial
+				rankedListSnapshot.clear();
 				
 				// this would only take effect next loop, therefore return now
 				return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
@@ -83,18 +89,67 @@ public class AlgorithmLSplit implements Algorithm
 		// also increment index afterwards with the post-increment operator
 	}
 
+	@Override
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests)
+	{
+		// the first request may begin a new pass, which depends on every pull so far
+		requests[0] = getNextArm(agent);
+		int count = 1;
+		
+		if (exploitationMode)
+		{
+			// pull the best arm every time
+			final int best = ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
+			while (count < maxRequests)
+			{
+				requests[count++] = best;
+			}
+		}
+		else
+		{
+			// the rest of this pass is already known
+			while (count < maxRequests && index < rankedListSnapshot.size())
+			{
+				requests[count++] = ArmPullRequest.get(rankedListSnapshot.get(index++));
+			}
+		}
+		
+		return count;
+	}
+
 	@Override
 	public Algorithm duplicate()
 	{
 		return new AlgorithmLSplit(lValue);
 	}
 
+	@Override
+	public void reset()
+	{
+		feasible = 1.0;
+		index = 0;
+		rankedListSnapshot.clear();
+		exploitationMode = false;
+	}
+
+	@Override
+	public boolean isCommitted()
+	{
+		return exploitationMode;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
 	}
 
+	@Override
+	public String getName()
+	{
+		return "l-split (" + lValue + ")";
+	}
+
 	/**
 	 * Get the value of l this algorithm is using
 	 * @return The value of l this algorithm is using
@@ -11,7 +11,9 @@ package com.zkxs.supplychain;
  */
 public class AlgorithmPEEF extends AlgorithmLSplit
 {
-
+	/** Percentage of budget to devote to exploration */
+	private final double epsilon;
+	
 	/**
 	 * Construct an new PEEF algorithm
 	 * @param numberOfArms The number of arms the agent has as children
@@ -22,21 +24,24 @@ public class AlgorithmPEEF extends AlgorithmLSplit
 	{
 		// l = (eB - 1) / (eB - K)
 		super((epsilon * initialBudget - 1) / (epsilon * initialBudget - numberOfArms));
+		this.epsilon = epsilon;
 	}
 	
 	/**
 	 * Private constructor for duplication of this algorithm
 	 * @param lValue the lValue to use in the superclass ({@link AlgorithmLSplit})
+	 * @param epsilon The percentage of the budget to devote to exploration
 	 */
-	private AlgorithmPEEF(double lValue)
+	private AlgorithmPEEF(double lValue, double epsilon)
 	{
 		super(lValue);
+		this.epsilon = epsilon;
 	}
 
 	@Override
 	public Algorithm duplicate()
 	{
-		return new AlgorithmPEEF(super.getLValue());
+		return new AlgorithmPEEF(super.getLValue(), epsilon);
 	}
 
 	@Override
@@ -45,4 +50,10 @@ public class AlgorithmPEEF extends AlgorithmLSplit
 		return true;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "PEEF (" + epsilon + ")";
+	}
+	
 }
@@ -0,0 +1,203 @@
+package com.zkxs.supplychain;
+/**
+ * Sequential halving (Karnin, Koren and Somekh, 2013). The budget known at init is split
+ * evenly across log<sub>2</sub>(arms) rounds. Each round pulls every surviving arm the same
+ * number of times, then the slower half of the survivors is dropped. Once one arm survives it
+ * is exploited. The survivors live in an index array that is reordered in place, and every
+ * round is known in advance, so whole rounds are handed out as pull batches.
+ */
+public class AlgorithmSH implements BatchAlgorithm
+{
+	/** True if we only want to exploit */
+	private boolean exploitationMode;
+	
+	/** The indices of the arms, survivors first */
+	private int[] arms;
+	
+	/** The number of surviving arms, which are the first entries of {@link #arms} */
+	private int survivors;
+	
+	/** The number of pulls the whole plan can afford */
+	private int plannedPulls;
+	
+	/** The number of halving rounds in the plan */
+	private int rounds;
+	
+	/** The number of times each survivor is pulled this round */
+	private int pullsPerArm;
+	
+	/** The number of pulls requested so far this round */
+	private int position;
+	
+	/**
+	 * Construct a new sequential halving algorithm
+	 */
+	public AlgorithmSH()
+	{
+		exploitationMode = false;
+	}
+	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		final AgentMemory memory = agent.getAgentMemory();
+		final int size = memory.size();
+		
+		if (arms == null || arms.length != size)
+		{
+			arms = new int[size];
+		}
+		
+		for (int i = 0; i < size; i++)
+		{
+			arms[i] = i;
+		}
+		
+		survivors = size;
+		position = 0;
+		
+		// every round pulls the survivors equally, so plan on the average arm cost
+		plannedPulls = (int)(agent.getInitialBudget() / memory.getMeanCost());
+		
+		// ceil(log2(size)) rounds halve the arms down to one
+		rounds = 32 - Integer.numberOfLeadingZeros(size - 1);
+		
+		exploitationMode = size <= 1;
+		if (!exploitationMode)
+		{
+			planRound();
+		}
+	}
+	
+	@Override
+	public int getNextArm(AgentSupplier agent)
+	{
+		if (!exploitationMode && position == survivors * pullsPerArm) // the round just finished
+		{
+			halve(agent);
+		}
+		
+		if (exploitationMode) // if exploiting
+		{
+			// pull the best arm every time
+			return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
+		}
+		
+		return ArmPullRequest.get(arms[position++ % survivors], false);
+	}
+	
+	@Override
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests)
+	{
+		if (!exploitationMode && position == survivors * pullsPerArm) // the round just finished
+		{
+			halve(agent);
+		}
+		
+		final int size = agent.getAgentMemory().size();
+		int count = 0;
+		
+		if (exploitationMode)
+		{
+			// pull the best arm every time
+			while (count < maxRequests)
+			{
+				requests[count++] = ArmPullRequest.get(size - 1, true);
+			}
+		}
+		else
+		{
+			// the rest of the round does not depend on the results of the pulls
+			final int roundPulls = survivors * pullsPerArm;
+			while (count < maxRequests && position < roundPulls)
+			{
+				requests[count++] = ArmPullRequest.get(arms[position++ % survivors], false);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Keep the faster half of the survivors and plan the next round
+	 * @param agent the agent running this algorithm
+	 */
+	private void halve(AgentSupplier agent)
+	{
+		final AgentMemory memory = agent.getAgentMemory();
+		
+		// insertion sort the survivors by mean time, fastest first
+		for (int i = 1; i < survivors; i++)
+		{
+			final int arm = arms[i];
+			final double mean = memory.indexedList.get(arm).getMeanTime();
+			
+			int j = i - 1;
+			while (j >= 0 && memory.indexedList.get(arms[j]).getMeanTime() > mean)
+			{
+				arms[j + 1] = arms[j];
+				j--;
+			}
+			arms[j + 1] = arm;
+		}
+		
+		survivors = (survivors + 1) / 2;
+		position = 0;
+		
+		if (Trace.ENABLED)
+		{
+			Trace.phaseChanged(agent, this, "halved to " + survivors + " arms");
+		}
+		
+		if (survivors == 1) // the best arm has been found
+		{
+			exploitationMode = true;
+		}
+		else
+		{
+			planRound();
+		}
+	}
+	
+	/**
+	 * Give the next round its even share of the planned pulls, at least one per survivor
+	 */
+	private void planRound()
+	{
+		pullsPerArm = Math.max(1, plannedPulls / (survivors * rounds));
+	}
+	
+	@Override
+	public Algorithm duplicate()
+	{
+		return new AlgorithmSH();
+	}
+	
+	@Override
+	public void reset()
+	{
+		exploitationMode = false;
+		survivors = 0;
+		position = 0;
+		pullsPerArm = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return exploitationMode;
+	}
+	
+	@Override
+	public boolean requiresInitialBudget()
+	{
+		return true;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "SH";
+	}
+	
+}
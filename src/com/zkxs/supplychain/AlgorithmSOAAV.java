@@ -35,10 +35,17 @@ public class AlgorithmSOAAV implements Algorithm
 		threshold = Double.MIN_VALUE; // anything goes
 		currentPosition = 0;
 		lastStart = 0;
-		rankedArmListSnapshot = null;
+		rankedArmListSnapshot = new SortedList<ArmMemory>(); // will be filled by init()
 	}
 	
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		// set up first run
+		agent.getAgentMemory().getRankedListSnapshot(rankedArmListSnapshot);
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent) // only one arm is feasible
 	{
@@ -48,16 +55,11 @@ public class AlgorithmSOAAV implements Algorithm
 			// pull the best arm every time
 			return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
 		}
-		else if (rankedArmListSnapshot == null) // if first run
-		{
-			// set up first run
-			rankedArmListSnapshot = agent.getAgentMemory().getRankedListSnapshot();
-		}
 		else if (currentPosition >= rankedArmListSnapshot.size()) // if end of pass reached
 		{	// then reset the pass
 			
 			// get a new snapshot of the arm rank
-			rankedArmListSnapshot = agent.getAgentMemory().getRankedListSnapshot();
+			agent.getAgentMemory().getRankedListSnapshot(rankedArmListSnapshot);
 			
 			// update the average threshold
 			threshold = agent.getAgentMemory().getAverage(lastStart) * thresholdMultiplier;
@@ -73,9 +75,8 @@ public class AlgorithmSOAAV implements Algorithm
 				// begin exploiting one arm, allowing much of this logic to be skipped
 				exploitationMode = true;
 				
-				// this is no longer needed, set to null so the garbage collector can
-				// do its work
-				rankedArmListSnapshot = null;
+				// this is no longer needed, but keep the storage for the next trial
+				rankedArmListSnapshot.clear();
 				
 				// this would only take effect next loop, therefore return now
 				return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
@@ -93,10 +94,32 @@ public class AlgorithmSOAAV implements Algorithm
 		return new AlgorithmSOAAV(xValue);
 	}
 
+	@Override
+	public void reset()
+	{
+		exploitationMode = false;
+		threshold = Double.MIN_VALUE; // anything goes
+		currentPosition = 0;
+		lastStart = 0;
+		rankedArmListSnapshot.clear();
+	}
+
+	@Override
+	public boolean isCommitted()
+	{
+		return exploitationMode;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "soaav (" + xValue + ")";
+	}
+	
 }
@@ -0,0 +1,195 @@
+package com.zkxs.supplychain;
+/**
+ * Sliding-window UCB (Garivier and Moulines, 2008), for suppliers that drift. Only the most
+ * recent pulls, across all arms, count towards the averages. Rewards are defined as for
+ * {@link AlgorithmUCB_BV1}: the inverse of the time taken, per unit of cost.
+ * <br /><br />
+ * The pulls in the window are kept in a ring buffer alongside running per-arm sums, so each
+ * pull entering the window and each pull leaving it takes O(1) time.
+ */
+public class AlgorithmSlidingWindowUCB implements ObservingAlgorithm
+{
+	/** Exploration constant of the confidence bonus */
+	private static final double XI = 0.6;
+	
+	/** The number of pulls in the window */
+	private final int windowSize;
+	
+	/** The arm of each pull in the window, overwritten oldest first */
+	private final int[] windowArms;
+	
+	/** The time of each pull in the window, overwritten oldest first */
+	private final double[] windowTimes;
+	
+	/** The position in the window the next pull is written to */
+	private int windowPosition;
+	
+	/** The number of pulls seen so far */
+	private int totalPulls;
+	
+	/** The number of pulls of each arm in the window */
+	private int[] counts;
+	
+	/** The sum of the times of each arm in the window */
+	private double[] sums;
+	
+	/** The average reward of each arm, inverse to its average time and per unit of cost */
+	private double[] rewards;
+	
+	/** The number of arms pulled in the initial pass */
+	private int initialPulls;
+	
+	/**
+	 * Construct a new sliding-window UCB algorithm
+	 * @param windowSize the number of recent pulls that count towards the averages, at least 1
+	 */
+	public AlgorithmSlidingWindowUCB(int windowSize)
+	{
+		if (windowSize <= 0)
+		{
+			throw new IllegalArgumentException("Window size must be at least 1");
+		}
+		
+		this.windowSize = windowSize;
+		windowArms = new int[windowSize];
+		windowTimes = new double[windowSize];
+		initialPulls = 0;
+	}
+	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		final int size = agent.getAgentMemory().size();
+		
+		// one slot per arm, reused across trials if the arm count is unchanged
+		if (counts == null || counts.length != size)
+		{
+			counts = new int[size];
+			sums = new double[size];
+			rewards = new double[size];
+		}
+		
+		for (int i = 0; i < size; i++)
+		{
+			counts[i] = 0;
+			sums[i] = 0;
+		}
+		
+		windowPosition = 0;
+		totalPulls = 0;
+	}
+	
+	@Override
+	public int getNextArm(AgentSupplier agent)
+	{
+		final AgentMemory memory = agent.getAgentMemory();
+		
+		// if each arm has not yet been pulled once
+		if (initialPulls < counts.length)
+		{
+			// pull the next arm
+			return ArmPullRequest.get(initialPulls++, false);
+		}
+		
+		final double logTime = Math.log(Math.min(totalPulls, windowSize));
+		
+		// the largest average reward bounds the scale of the rewards
+		double maxReward = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] == 0) // slid out of the window, so it could be anything
+			{
+				return ArmPullRequest.get(i, false);
+			}
+			
+			rewards[i] = counts[i] / sums[i] / memory.indexedList.get(i).getCost();
+			maxReward = Math.max(maxReward, rewards[i]);
+		}
+		
+		// find the arm with the highest index
+		int maxIndex = 0;
+		double maxArmIndex = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < counts.length; i++)
+		{
+			final double armIndex = rewards[i] + maxReward * Math.sqrt(XI * logTime / counts[i]);
+			
+			if (armIndex > maxArmIndex)
+			{
+				maxArmIndex = armIndex;
+				maxIndex = i;
+			}
+		}
+		
+		return ArmPullRequest.get(maxIndex, false);
+	}
+	
+	@Override
+	public void observe(int arm, int pulls, double time)
+	{
+		for (int i = 0; i < pulls; i++)
+		{
+			observe(arm, time);
+		}
+	}
+	
+	/**
+	 * Record a pull, sliding the oldest pull out of a full window
+	 * @param arm the index of the arm pulled
+	 * @param time the time the pull took
+	 */
+	private void observe(int arm, double time)
+	{
+		if (totalPulls >= windowSize) // the window is full
+		{
+			final int oldest = windowArms[windowPosition];
+			counts[oldest]--;
+			sums[oldest] -= windowTimes[windowPosition];
+			
+			// rounding can leave a little behind once an arm has left the window entirely
+			if (counts[oldest] == 0)
+			{
+				sums[oldest] = 0;
+			}
+		}
+		
+		windowArms[windowPosition] = arm;
+		windowTimes[windowPosition] = time;
+		windowPosition = windowPosition + 1 == windowSize ? 0 : windowPosition + 1;
+		
+		counts[arm]++;
+		sums[arm] += time;
+		totalPulls++;
+	}
+	
+	@Override
+	public Algorithm duplicate()
+	{
+		return new AlgorithmSlidingWindowUCB(windowSize);
+	}
+	
+	@Override
+	public void reset()
+	{
+		// the window is cleared in init, so it can be kept
+		initialPulls = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+	
+	@Override
+	public boolean requiresInitialBudget()
+	{
+		return false;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "SW-UCB (" + windowSize + ")";
+	}
+	
+}
@@ -0,0 +1,215 @@
+package com.zkxs.supplychain;
+import java.util.Random;
+
+/**
+ * Thompson sampling with a normal-gamma posterior over the time of each arm. After every arm
+ * has been pulled {@link #INITIAL_PULLS} times, each pull draws a plausible mean time for
+ * every arm from its posterior and pulls the arm whose draw is the lowest. The posterior of an
+ * arm only depends on its pulls, mean and variance, which {@link ArmMemory} already keeps, so
+ * the posteriors are cached in flat arrays and only refreshed for arms pulled since.
+ */
+public class AlgorithmThompson implements BatchAlgorithm
+{
+	/** The number of times each arm is pulled before sampling begins */
+	private static final int INITIAL_PULLS = 2;
+	
+	/** Shape of the gamma prior on the precision of an arm's times */
+	private static final double PRIOR_SHAPE = 1.0;
+	
+	/** Rate of the gamma prior on the precision of an arm's times, roughly a prior variance */
+	private static final double PRIOR_RATE = 1.0;
+	
+	/** The random number generator of the agent running this algorithm, see {@link AgentSupplier#getRandom()} */
+	private Random random;
+	
+	/** The number of pulls each arm had when its posterior was last computed */
+	private int[] posteriorPulls;
+	
+	/** The posterior mean of each arm's mean time */
+	private double[] posteriorMean;
+	
+	/** The posterior shape of each arm's precision */
+	private double[] posteriorShape;
+	
+	/** The posterior rate of each arm's precision */
+	private double[] posteriorRate;
+	
+	/** The number of initial pulls requested so far */
+	private int initialPulls;
+	
+	/**
+	 * Construct a new Thompson sampling algorithm
+	 */
+	public AlgorithmThompson()
+	{
+		initialPulls = 0;
+	}
+	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		final int size = agent.getAgentMemory().size();
+		
+		// one posterior per arm, reused across trials if the arm count is unchanged
+		if (posteriorPulls == null || posteriorPulls.length != size)
+		{
+			posteriorPulls = new int[size];
+			posteriorMean = new double[size];
+			posteriorShape = new double[size];
+			posteriorRate = new double[size];
+		}
+		
+		for (int i = 0; i < size; i++)
+		{
+			posteriorPulls[i] = -1; // not yet computed
+		}
+		
+		random = agent.getRandom();
+	}
+	
+	@Override
+	public int getNextArm(AgentSupplier agent)
+	{
+		final int size = agent.getAgentMemory().size();
+		
+		if (initialPulls < size * INITIAL_PULLS)
+		{
+			// pull every arm a few times, round robin
+			return ArmPullRequest.get(initialPulls++ % size, false);
+		}
+		
+		return ArmPullRequest.get(sampleBestArm(agent.getAgentMemory()), false);
+	}
+	
+	@Override
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests)
+	{
+		final int size = agent.getAgentMemory().size();
+		int count = 0;
+		
+		// the initial pulls do not depend on the results of the pulls
+		while (count < maxRequests && initialPulls < size * INITIAL_PULLS)
+		{
+			requests[count++] = ArmPullRequest.get(initialPulls++ % size, false);
+		}
+		
+		// each sample should see the result of the previous pull, so only issue one
+		if (count == 0)
+		{
+			requests[count++] = ArmPullRequest.get(sampleBestArm(agent.getAgentMemory()), false);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Draw a mean time for every arm that has been pulled from its posterior
+	 * @param memory the memory of the agent running this algorithm
+	 * @return the index of the arm with the lowest draw
+	 */
+	private int sampleBestArm(AgentMemory memory)
+	{
+		int bestIndex = 0;
+		double bestDraw = Double.MAX_VALUE;
+		
+		for (int i = 0; i < posteriorPulls.length; i++)
+		{
+			final ArmMemory arm = memory.indexedList.get(i);
+			final double weight = arm.getEffectivePulls();
+			
+			// the initial pulls of an arm bought asynchronously may not have come back yet
+			if (arm.isUnpulled())
+			{
+				continue;
+			}
+			
+			// refresh the posterior only if the arm has been pulled since
+			if (posteriorPulls[i] != arm.getPulls())
+			{
+				// with a flat prior on the mean, the posterior is centered on the sample mean
+				posteriorPulls[i] = arm.getPulls();
+				posteriorMean[i] = arm.getMeanTime();
+				posteriorShape[i] = PRIOR_SHAPE + weight / 2.0;
+				
+				// a single pull says nothing about the spread, leaving the prior alone
+				final double deviations = arm.hasVariance() ? arm.getVariance() * (weight - 1) : 0;
+				posteriorRate[i] = PRIOR_RATE + deviations / 2.0;
+			}
+			
+			// draw a precision, then a mean given that precision
+			final double precision = sampleGamma(posteriorShape[i]) / posteriorRate[i];
+			final double draw = posteriorMean[i] + random.nextGaussian() / Math.sqrt(weight * precision);
+			
+			if (draw < bestDraw)
+			{
+				bestDraw = draw;
+				bestIndex = i;
+			}
+		}
+		
+		return bestIndex;
+	}
+	
+	/**
+	 * Draw from a gamma distribution with unit rate using the method of Marsaglia and Tsang
+	 * @param shape the shape of the distribution, at least 1
+	 * @return the draw
+	 */
+	private double sampleGamma(double shape)
+	{
+		final double d = shape - 1.0 / 3.0;
+		final double c = 1.0 / Math.sqrt(9.0 * d);
+		
+		while (true)
+		{
+			final double x = random.nextGaussian();
+			double v = 1.0 + c * x;
+			if (v <= 0)
+			{
+				continue;
+			}
+			
+			v = v * v * v;
+			final double u = random.nextDouble();
+			final double x2 = x * x;
+			
+			// cheap squeeze first, then the exact test
+			if (u < 1.0 - 0.0331 * x2 * x2 || Math.log(u) < 0.5 * x2 + d * (1.0 - v + Math.log(v)))
+			{
+				return d * v;
+			}
+		}
+	}
+	
+	@Override
+	public Algorithm duplicate()
+	{
+		return new AlgorithmThompson();
+	}
+	
+	@Override
+	public void reset()
+	{
+		// the posteriors are recomputed in init, so they can be kept
+		initialPulls = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+	
+	@Override
+	public boolean requiresInitialBudget()
+	{
+		return false;
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "thompson";
+	}
+	
+}
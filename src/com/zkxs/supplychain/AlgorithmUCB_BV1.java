@@ -2,8 +2,8 @@ package com.zkxs.supplychain;
 
 public class AlgorithmUCB_BV1 implements Algorithm
 {
-	/** The cost of pulling an arm, assuming all arms have the same cost */
-	private final static double COST = SupplyChainDriver.COST;
+	/** The cost of the cheapest arm, the lambda of UCB-BV1 */
+	private double minimumCost;
 	
 	/** current time */
 	private int time = 0;
@@ -11,6 +11,18 @@ public class AlgorithmUCB_BV1 implements Algorithm
 	/** Stores values of each arm for each time step */
 	private double[] armIndexes;
 	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		// one index per arm, reused across trials if the arm count is unchanged
+		if (armIndexes == null || armIndexes.length != agent.getAgentMemory().size())
+		{
+			armIndexes = new double[agent.getAgentMemory().size()];
+		}
+		
+		minimumCost = agent.getAgentMemory().getMinimumCost();
+	}
+	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
@@ -24,20 +36,17 @@ public class AlgorithmUCB_BV1 implements Algorithm
 		}
 		else
 		{
-			// lazily initialize armIndexes
-			if (armIndexes == null) armIndexes = new double[agent.getAgentMemory().size()];
-			
 			// for each arm, calculate its index
 			for (int i = 0; i < armIndexes.length; i++)
 			{
-				// reward is inversely proportional to time
+				// reward is inversely proportional to time, and is earned per unit of cost
 				ArmMemory arm = agent.getAgentMemory().indexedList.get(i);
-				double averageReward = 1 / arm.getMeanTime();
+				double averageReward = 1 / arm.getMeanTime() / arm.getCost();
 				int pulls = arm.getPulls();
 				
 				// this term is used twice, so I save it
 				double term = Math.sqrt(Math.log(time - 1) / pulls);
-				double armIndex = averageReward + (2 * term) / (1 - term);
+				double armIndex = averageReward + (1 + 1 / minimumCost) * term / (minimumCost - term);
 				armIndexes[i] = armIndex;
 			}
 			
@@ -62,10 +71,29 @@ public class AlgorithmUCB_BV1 implements Algorithm
 		return new AlgorithmUCB_BV1();
 	}
 	
+	@Override
+	public void reset()
+	{
+		// armIndexes is overwritten before it is read, so it can be kept
+		time = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+	
 	@Override
 	public boolean requiresInitialBudget()
 	{
 		return false;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "UCB-BV1";
+	}
+	
 }
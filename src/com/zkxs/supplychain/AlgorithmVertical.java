@@ -1,46 +1,186 @@
 package com.zkxs.supplychain;
-
-public class AlgorithmVertical implements Algorithm
+/**
+ * Successive elimination. The arms still in contention are pulled round robin, and after
+ * each full round every arm whose confidence interval lies entirely above the confidence
+ * interval of some other arm is dropped. Once a single arm remains it is exploited. The
+ * intervals come from the running variance each {@link ArmMemory} keeps, so arms that
+ * always take the same time are separated after only {@link #MINIMUM_PULLS} rounds.
+ */
+public class AlgorithmVertical implements BatchAlgorithm
 {
+	/** The number of pulls an arm needs before it has a variance, and so can be eliminated */
+	private static final int MINIMUM_PULLS = 2;
+	
+	/** The width of the confidence intervals, in standard errors. Larger is more cautious. */
+	private final double z;
+	
 	/** True if we only want to exploit */
 	private boolean exploitationMode;
 	
-	/** Something about how aggressive the algorithm is? */
-	private double yqstddevtrheshold; //TODO: refactor
+	/** The indices of the arms still in contention, in round robin order */
+	private int[] activeArms;
+	
+	/** The number of valid entries in {@link #activeArms} */
+	private int activeCount;
+	
+	/** The position in {@link #activeArms} of the next arm to pull this round */
+	private int position;
 	
-	/** A snapshot of the ranked arms as per the beginning of a SOAAV pass */
-	private SortedList<ArmMemory> rankedArmListSnapshot;
+	/**
+	 * Construct a new successive elimination algorithm
+	 * @param z the width of the confidence intervals in standard errors (1.96 is 95%)
+	 */
+	public AlgorithmVertical(double z)
+	{
+		this.z = z;
+		exploitationMode = false;
+	}
+	
+	@Override
+	public void init(AgentSupplier agent)
+	{
+		final int size = agent.getAgentMemory().size();
+		
+		if (activeArms == null || activeArms.length != size)
+		{
+			activeArms = new int[size];
+		}
+		
+		for (int i = 0; i < size; i++)
+		{
+			activeArms[i] = i;
+		}
+		
+		activeCount = size;
+		position = 0;
+		exploitationMode = size <= 1;
+	}
 	
 	@Override
 	public int getNextArm(AgentSupplier agent)
 	{
+		if (!exploitationMode && position == activeCount) // a round just finished
+		{
+			eliminate(agent);
+		}
+		
 		if (exploitationMode) // if exploiting
 		{
 			// pull the best arm every time
 			return ArmPullRequest.get(agent.getAgentMemory().size() - 1, true);
 		}
-		else if (rankedArmListSnapshot == null) // if first run
+		
+		return ArmPullRequest.get(activeArms[position++], false);
+	}
+	
+	@Override
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests)
+	{
+		if (!exploitationMode && position == activeCount) // a round just finished
+		{
+			eliminate(agent);
+		}
+		
+		final int size = agent.getAgentMemory().size();
+		int count = 0;
+		
+		if (exploitationMode)
+		{
+			// pull the best arm every time
+			while (count < maxRequests)
+			{
+				requests[count++] = ArmPullRequest.get(size - 1, true);
+			}
+		}
+		else
 		{
-			// set up first run
-			rankedArmListSnapshot = agent.getAgentMemory().getRankedListSnapshot();
+			// the rest of the round does not depend on the results of the pulls
+			while (count < maxRequests && position < activeCount)
+			{
+				requests[count++] = ArmPullRequest.get(activeArms[position++], false);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Drop every arm whose confidence interval lies entirely above the lowest upper bound,
+	 * and start a new round
+	 * @param agent the agent running this algorithm
+	 */
+	private void eliminate(AgentSupplier agent)
+	{
+		final AgentMemory memory = agent.getAgentMemory();
+		position = 0;
+		
+		// the arm with the lowest upper bound can never be eliminated
+		double lowestUpperBound = Double.MAX_VALUE;
+		for (int i = 0; i < activeCount; i++)
+		{
+			final ArmMemory arm = memory.select(ArmPullRequest.get(activeArms[i], false));
+			
+			if (arm.getPulls() < MINIMUM_PULLS) // some arm has no interval yet
+			{
+				return;
+			}
 			
+			lowestUpperBound = Math.min(lowestUpperBound, arm.getUpperConfidenceBound(z));
+		}
+		
+		// keep the survivors in order
+		int survivors = 0;
+		for (int i = 0; i < activeCount; i++)
+		{
+			final ArmMemory arm = memory.select(ArmPullRequest.get(activeArms[i], false));
+			if (arm.getLowerConfidenceBound(z) <= lowestUpperBound)
+			{
+				activeArms[survivors++] = activeArms[i];
+			}
+		}
+		
+		if (Trace.ENABLED && survivors < activeCount)
+		{
+			Trace.phaseChanged(agent, this, "eliminated down to " + survivors + " arms");
 		}
+		activeCount = survivors;
 		
-		return 0;
+		if (activeCount == 1) // the best arm has been found
+		{
+			exploitationMode = true;
+		}
 	}
 	
 	@Override
 	public Algorithm duplicate()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return new AlgorithmVertical(z);
+	}
+	
+	@Override
+	public void reset()
+	{
+		exploitationMode = false;
+		activeCount = 0;
+		position = 0;
+	}
+	
+	@Override
+	public boolean isCommitted()
+	{
+		return exploitationMode;
 	}
 	
 	@Override
 	public boolean requiresInitialBudget()
 	{
-		// TODO Auto-generated method stub
 		return false;
 	}
 	
+	@Override
+	public String getName()
+	{
+		return "vertical (" + z + ")";
+	}
+	
 }
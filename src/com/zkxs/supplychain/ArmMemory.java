@@ -12,19 +12,54 @@ public class ArmMemory implements Comparable<ArmMemory>
 {	
 	// these fields are currently protected 
 	
-	private double totalTime;
+	/** The number of recent pulls remembered, or 0 to remember every pull */
+	private static final int WINDOW = SupplyChainDriver.ARM_MEMORY_WINDOW;
+	
+	/** How much older pulls are discounted by each new pull, or 1 to weigh all pulls equally */
+	private static final double DECAY = WINDOW > 0 ? 1 : SupplyChainDriver.ARM_MEMORY_DECAY;
+	
+	/** Running mean of the times this arm has taken, maintained with Welford's method */
+	private double meanTime;
+	
+	/** Running sum of squared differences from {@link #meanTime} */
+	private double squaredDeviations;
+	
+	/**
+	 * The weight of the pulls {@link #meanTime} is made of: every pull, the pulls in the
+	 * window, or the decayed sum of the pulls' weights
+	 */
+	private double weight;
+	
+	/** The times of the pulls in the window, overwritten oldest first, or <code>null</code> */
+	private final double[] window;
+	
+	/** The position in {@link #window} the next time is written to */
+	private int windowPosition;
+	
 	private int pulls;
 	private final Supplier supplier;
 	
 	/** This arm's index on the multi-armed bandit */
 	private final int index;
 	
+	/** The trial counter of the agent remembering this arm */
+	private final TrialEpoch trialEpoch;
+	
+	/** The epoch this arm's statistics belong to. Stale statistics are reset on first use. */
+	private int epoch;
+	
 	private boolean enabled = false;
 	private ArmMemory oldBest = null;
 	private boolean probabilityCached = false;
 	private double cachedProbability;
 	private SortedList<Double> samples;
 	
+	/** Summarizes the times of this arm when sketching is enabled, allocated on first use */
+	private QuantileSketch sketch;
+	
+	/** Is {@link #sketch} tracking the times of this arm? */
+	private boolean sketchEnabled = false;
+	
 	/** Used to sort doubles in descending order */
 	private static Comparator<Double> descendingDoubleComparator = new Comparator<Double>(){
 		@Override
@@ -40,12 +75,31 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 * @param index index of the arm in the ArrayList of suppliers (should be unique)
 	 */
 	public ArmMemory(Supplier supplier, int index)
+	{
+		this(supplier, index, new TrialEpoch());
+	}
+	
+	/**
+	 * Constructs an ArmMemory object whose statistics are discarded whenever an epoch counter
+	 * advances
+	 * @param supplier The supplier this object is remembering
+	 * @param index index of the arm in the ArrayList of suppliers (should be unique)
+	 * @param trialEpoch the trial counter of the agent remembering this arm
+	 */
+	ArmMemory(Supplier supplier, int index, TrialEpoch trialEpoch)
 	{
 		this.supplier = supplier;
 		this.index = index;
-		totalTime = 0;
+		this.trialEpoch = trialEpoch;
+		epoch = trialEpoch.get();
+		meanTime = 0;
+		squaredDeviations = 0;
+		weight = 0;
 		pulls = 0;
 		
+		window = WINDOW > 0 ? new double[WINDOW] : null;
+		windowPosition = 0;
+		
 		samples = new SortedList<>(descendingDoubleComparator);
 	}
 	
@@ -54,7 +108,11 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public void reset()
 	{
-		totalTime = 0;
+		epoch = trialEpoch.get();
+		meanTime = 0;
+		squaredDeviations = 0;
+		weight = 0;
+		windowPosition = 0;
 		pulls = 0;
 		
 		if (enabled)
@@ -64,6 +122,24 @@ public class ArmMemory implements Comparable<ArmMemory>
 			probabilityCached = false;
 			samples.clear();
 		}
+		
+		if (sketchEnabled)
+		{
+			sketchEnabled = false;
+			sketch.clear();
+		}
+	}
+	
+	/**
+	 * Reset this arm if its statistics belong to an older epoch, so that they read as a
+	 * fresh arm's
+	 */
+	private void checkEpoch()
+	{
+		if (epoch != trialEpoch.get())
+		{
+			reset();
+		}
 	}
 	
 	/**
@@ -72,14 +148,136 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public void recordPull(double time)
 	{
-		totalTime += time;
+		checkEpoch();
 		pulls++;
+		addTime(time);
 		
 		if (enabled)
 		{
 			samples.add(time);
 			probabilityCached = false;
 		}
+		
+		if (sketchEnabled)
+		{
+			sketch.add(time);
+		}
+	}
+	
+	/**
+	 * Record several pulls at once, all of which took the same length of time
+	 * @param pulls the number of pulls
+	 * @param time the length of time each pull took
+	 */
+	public void recordPulls(int pulls, double time)
+	{
+		checkEpoch();
+		this.pulls += pulls;
+		
+		if (WINDOW > 0 || DECAY != 1)
+		{
+			// each time changes what the others weigh, so they must be added in turn
+			for (int i = 0; i < pulls; i++)
+			{
+				addTime(time);
+			}
+		}
+		else
+		{
+			// merge in a group of identical times, which has no deviation of its own
+			merge(pulls, time, 0);
+		}
+		
+		if (enabled)
+		{
+			for (int i = 0; i < pulls; i++)
+			{
+				samples.add(time);
+			}
+			probabilityCached = false;
+		}
+		
+		if (sketchEnabled)
+		{
+			for (int i = 0; i < pulls; i++)
+			{
+				sketch.add(time);
+			}
+		}
+	}
+	
+	/**
+	 * Record several pulls at once from a summary of their times, as drawn for an aggregated
+	 * purchase. Only the mean and variance can be kept this way, so every pull must weigh the
+	 * same (see {@link #remembersEveryPull()}) and individual samples must not be tracked.
+	 * @param pulls the number of pulls
+	 * @param time the mean length of time the pulls took
+	 * @param squaredDeviations the sum of the squared differences of the pulls' times from their mean
+	 */
+	public void recordPulls(int pulls, double time, double squaredDeviations)
+	{
+		checkEpoch();
+		assert remembersEveryPull() && !enabled && !sketchEnabled : "individual times are required";
+		
+		this.pulls += pulls;
+		merge(pulls, time, squaredDeviations);
+	}
+	
+	/**
+	 * Merge a group of times into the running mean and variance, by Chan's parallel update
+	 * @param pulls the number of times in the group
+	 * @param time the mean of the group
+	 * @param groupDeviations the sum of the squared differences of the group from its mean
+	 */
+	private void merge(int pulls, double time, double groupDeviations)
+	{
+		final double oldWeight = weight;
+		weight += pulls;
+		
+		final double delta = time - meanTime;
+		meanTime += delta * pulls / weight;
+		squaredDeviations += groupDeviations + delta * delta * (oldWeight * pulls / weight);
+	}
+	
+	/**
+	 * Check if every pull is remembered with the same weight, rather than only a window of
+	 * recent pulls or with older pulls decayed
+	 * @return <code>true</code> if the mean and variance are made of every pull
+	 */
+	public static boolean remembersEveryPull()
+	{
+		return WINDOW == 0 && DECAY == 1;
+	}
+	
+	/**
+	 * Fold a time into the running mean and variance
+	 * @param time the length of time a pull took
+	 */
+	private void addTime(double time)
+	{
+		if (WINDOW > 0 && weight == WINDOW)
+		{
+			// the window is full, the oldest time slides out as the new one slides in
+			final double oldest = window[windowPosition];
+			final double oldMean = meanTime;
+			meanTime += (time - oldest) / WINDOW;
+			squaredDeviations += (time - oldest) * (time - meanTime + oldest - oldMean);
+		}
+		else
+		{
+			// Welford's update is numerically stable, unlike keeping the sum of squares.
+			// Decaying discounts everything remembered so far before adding the new time.
+			weight = weight * DECAY + 1;
+			final double delta = time - meanTime;
+			meanTime += delta / weight;
+			squaredDeviations = squaredDeviations * DECAY + delta * (time - meanTime);
+		}
+		
+		if (WINDOW > 0)
+		{
+			window[windowPosition] = time;
+			windowPosition = windowPosition + 1 == WINDOW ? 0 : windowPosition + 1;
+		}
 	}
 	
 	/**
@@ -89,9 +287,65 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public void enable()
 	{
+		checkEpoch();
 		enabled = true;
 	}
 	
+	/**
+	 * Check if tracking of every individual sample is enabled
+	 * @return <code>true</code> if every individual sample is being tracked
+	 */
+	public boolean isEnabled()
+	{
+		checkEpoch();
+		return enabled;
+	}
+	
+	/**
+	 * Enable summarizing the times of this arm in a bounded-memory {@link QuantileSketch},
+	 * so that medians and tail times can be queried with {@link #getQuantile(double)}.
+	 * This is much cheaper than {@link #enable()}, but still costs a little time per pull,
+	 * so it is disabled by default or when the ArmMemory is {@link #reset()}
+	 */
+	public void enableSketch()
+	{
+		checkEpoch();
+		if (sketch == null)
+		{
+			sketch = new QuantileSketch(SupplyChainDriver.QUANTILE_SKETCH_SIZE);
+		}
+		sketchEnabled = true;
+	}
+	
+	/**
+	 * Check if the times of this arm are being summarized in a sketch
+	 * @return <code>true</code> if the times of this arm are being summarized in a sketch
+	 */
+	public boolean isSketchEnabled()
+	{
+		checkEpoch();
+		return sketchEnabled;
+	}
+	
+	/**
+	 * Estimates a quantile of the times this supplier has taken since the sketch was enabled
+	 * @param q The quantile to estimate, between 0 and 1 (0.5 is the median)
+	 * @return the estimated quantile, or Double.MAX_VALUE if no data has been gathered yet
+	 * (this way untested arms have the worst utility)
+	 * @throws IllegalStateException if the sketch is not enabled
+	 */
+	public double getQuantile(double q)
+	{
+		checkEpoch();
+		if (!sketchEnabled)
+		{
+			throw new IllegalStateException("Quantile sketch is not enabled");
+		}
+		
+		if (sketch.size() == 0) return Double.MAX_VALUE;
+		return sketch.getQuantile(q);
+	}
+	
 	/**
 	 * Computes the average time this supplier takes
 	 * @return the average time this supplier takes, or Double.MAX_VALUE if no data has been gathered yet
@@ -99,8 +353,71 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public double getMeanTime()
 	{
+		checkEpoch();
 		if (isUnpulled()) return Double.MAX_VALUE;
-		return totalTime / pulls;
+		return meanTime;
+	}
+	
+	/**
+	 * Check if the pulls this arm remembers say anything about the spread of its times. This
+	 * takes at least two pulls, and more than one pull's worth of {@link #getEffectivePulls()}:
+	 * a window of one pull or a decay of zero only ever remember the last pull.
+	 * @return <code>true</code> if the variance of this arm's times can be estimated
+	 */
+	public boolean hasVariance()
+	{
+		checkEpoch();
+		return pulls >= 2 && weight > 1;
+	}
+	
+	/**
+	 * Computes the sample variance of the times this supplier takes
+	 * @return the sample variance of the times this supplier takes, or Double.MAX_VALUE if
+	 * it cannot be estimated yet (see {@link #hasVariance()})
+	 */
+	public double getVariance()
+	{
+		checkEpoch();
+		if (!hasVariance()) return Double.MAX_VALUE;
+		
+		// sliding a window can leave a little rounding error below zero
+		return Math.max(squaredDeviations, 0) / (weight - 1);
+	}
+	
+	/**
+	 * Computes the sample standard deviation of the times this supplier takes
+	 * @return the sample standard deviation of the times this supplier takes, or Double.MAX_VALUE
+	 * if it cannot be estimated yet (see {@link #hasVariance()})
+	 */
+	public double getStandardDeviation()
+	{
+		checkEpoch();
+		if (!hasVariance()) return Double.MAX_VALUE;
+		return Math.sqrt(getVariance());
+	}
+	
+	/**
+	 * Computes the lower end of a confidence interval for the mean time this supplier takes
+	 * @param z the number of standard errors below the mean (1.96 gives a 95% interval)
+	 * @return the lower confidence bound, or -Double.MAX_VALUE if the variance cannot be estimated yet
+	 */
+	public double getLowerConfidenceBound(double z)
+	{
+		checkEpoch();
+		if (!hasVariance()) return -Double.MAX_VALUE;
+		return meanTime - z * Math.sqrt(getVariance() / weight);
+	}
+	
+	/**
+	 * Computes the upper end of a confidence interval for the mean time this supplier takes
+	 * @param z the number of standard errors above the mean (1.96 gives a 95% interval)
+	 * @return the upper confidence bound, or Double.MAX_VALUE if the variance cannot be estimated yet
+	 */
+	public double getUpperConfidenceBound(double z)
+	{
+		checkEpoch();
+		if (!hasVariance()) return Double.MAX_VALUE;
+		return meanTime + z * Math.sqrt(getVariance() / weight);
 	}
 	
 	/**
@@ -109,15 +426,29 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public int getPulls()
 	{
+		checkEpoch();
 		return pulls;
 	}
 	
+	/**
+	 * Returns the number of pulls the mean and variance are made of. This is the number of
+	 * times the arm has been pulled, unless only a window of recent pulls is remembered or
+	 * older pulls are decayed.
+	 * @return the effective number of pulls
+	 */
+	public double getEffectivePulls()
+	{
+		checkEpoch();
+		return weight;
+	}
+	
 	/**
 	 * Check if this arm has been pulled
 	 * @return <code>true</code> if this arm has been pulled, <code>false</code> if it has not.
 	 */
 	public boolean isUnpulled()
 	{
+		checkEpoch();
 		return pulls == 0;
 	}
 	
@@ -130,6 +461,24 @@ public class ArmMemory implements Comparable<ArmMemory>
 		return supplier;
 	}
 
+	/**
+	 * Get the cost of pulling this arm
+	 * @return The cost of pulling this arm
+	 */
+	public double getCost()
+	{
+		return supplier.getCost();
+	}
+	
+	/**
+	 * Get the cost of pulling this arm in {@link Budget} units
+	 * @return The cost of pulling this arm in {@link Budget} units
+	 */
+	public long getCostUnits()
+	{
+		return supplier.getCostUnits();
+	}
+	
 	/**
 	 * Get the index of this arm in the ArrayList of suppliers
 	 * @return The index of this arm in the ArrayList of suppliers
@@ -201,6 +550,7 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public SortedList<Double> getSamples()
 	{
+		checkEpoch();
 		return samples;
 	}
 	
@@ -229,6 +579,7 @@ public class ArmMemory implements Comparable<ArmMemory>
 	 */
 	public double probabilityOfSamplesOccurring(ArmMemory bestArmMemory)
 	{
+		checkEpoch();
 		/* We only need to operate if the result is not cached, or would be different
 		 * from the currently cached result. Caching is used here because it is
 		 * expensive to calculate the return value, but it is used multiple times
@@ -0,0 +1,22 @@
+package com.zkxs.supplychain;
+/**
+ * An optional extension of {@link Algorithm} for algorithms that know several of their
+ * upcoming decisions in advance, such as the exploration sweep of a phase-based algorithm.
+ * Agents detect this interface and request whole batches of pulls at once, issuing them
+ * in a tight loop instead of consulting the algorithm before every pull.
+ */
+public interface BatchAlgorithm extends Algorithm
+{
+	/**
+	 * Select the next several arms to pull. The requests are issued in order, and ranked
+	 * requests are resolved against the ranked list at the time they are pulled, so a
+	 * batch must only contain decisions that would be made identically by successive calls
+	 * to {@link #getNextArm(AgentSupplier)}.
+	 * @param agent The agent this algorithm is working for
+	 * @param requests The buffer to write the encoded {@link ArmPullRequest}s into
+	 * @param maxRequests The maximum number of requests to write. This never exceeds the
+	 * number of pulls the agent can currently afford.
+	 * @return The number of requests written, which is between 1 and <code>maxRequests</code>
+	 */
+	public int getNextArms(AgentSupplier agent, int[] requests, int maxRequests);
+}
@@ -0,0 +1,47 @@
+package com.zkxs.supplychain;
+/**
+ * Converts budgets and costs to and from the fixed-point units agents keep their budgets in.
+ * Budgets are held as a whole number of units so that spending is exact: paying for a pull
+ * never leaves a rounding error behind, however many pulls are made or whatever the costs.
+ */
+public class Budget
+{
+	/** The number of units in a budget of 1. Costs are exact to this many decimal places. */
+	public static final long UNITS = 1000000;
+	
+	/**
+	 * Convert an amount of budget to units, rounding to the nearest unit
+	 * @param amount the amount of budget
+	 * @return the number of units in that amount
+	 */
+	public static long toUnits(double amount)
+	{
+		return Math.round(amount * UNITS);
+	}
+	
+	/**
+	 * Convert a number of units back to an amount of budget
+	 * @param units the number of units
+	 * @return the amount of budget those units make
+	 */
+	public static double toAmount(long units)
+	{
+		return (double)units / UNITS;
+	}
+	
+	/**
+	 * Find how many pulls of a given cost a budget can pay for
+	 * @param budget the budget, in units
+	 * @param cost the cost of a pull, in units, greater than 0 as every {@link Supplier} is
+	 * @return the number of pulls the budget can afford
+	 */
+	public static int affordablePulls(long budget, long cost)
+	{
+		return (int)Math.min(budget / cost, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Cannot be instantiated, static access only
+	 */
+	private Budget(){};
+}
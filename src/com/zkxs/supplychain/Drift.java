@@ -0,0 +1,164 @@
+package com.zkxs.supplychain;
+import java.util.Random;
+
+/**
+ * Describes how the mean time of a supplier changes over the course of a trial. A drift is a
+ * pure function of the trial's clock, which is how many pulls the agent buying from the
+ * supplier has made so far this trial. Every supplier of an agent shares that clock, so a
+ * supplier drifts whether or not it is pulled. A drift holds no state of its own, can be
+ * shared between suppliers, and costs no allocation per sample.
+ */
+public abstract class Drift
+{
+	/**
+	 * The kinds of drift {@link #random(Kind, double, long, Random)} can create
+	 */
+	public enum Kind
+	{
+		/** Suppliers never change */
+		NONE,
+		
+		/** Mean times ramp steadily to a new level, then stay there */
+		LINEAR,
+		
+		/** Mean times jump to a new level at fixed points in the trial */
+		PIECEWISE,
+		
+		/** Mean times switch back and forth between two regimes */
+		REGIME
+	}
+	
+	/** The number of segments of a random {@link Kind#PIECEWISE} drift */
+	private static final int RANDOM_SEGMENTS = 4;
+	
+	/**
+	 * Get how far the mean time has moved away from its starting value
+	 * @param time the number of pulls the buyer made before this one, this trial
+	 * @return the amount to add to the mean time
+	 */
+	public abstract double shift(long time);
+	
+	/**
+	 * Create a drift with random parameters, so that suppliers drift independently of each other
+	 * @param kind the kind of drift
+	 * @param magnitude the largest shift of the mean time
+	 * @param period the number of pulls over which the drift plays out: the length of the
+	 * ramp, of each piece, or of each regime
+	 * @param rand the source of randomness for the parameters
+	 * @return the new drift, or <code>null</code> for {@link Kind#NONE}
+	 */
+	public static Drift random(Kind kind, double magnitude, long period, Random rand)
+	{
+		switch (kind)
+		{
+			case LINEAR:
+				return new Linear(magnitude * (2 * rand.nextDouble() - 1), period);
+			case PIECEWISE:
+				double[] shifts = new double[RANDOM_SEGMENTS];
+				for (int i = 1; i < RANDOM_SEGMENTS; i++) // the first piece starts unshifted
+				{
+					shifts[i] = magnitude * (2 * rand.nextDouble() - 1);
+				}
+				return new Piecewise(period, shifts);
+			case REGIME:
+				return new Regime(rand.nextBoolean() ? magnitude : -magnitude, period,
+						(long)(rand.nextDouble() * 2 * period));
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * The mean time ramps linearly to a new level, then stays there
+	 */
+	public static class Linear extends Drift
+	{
+		/** The shift at the end of the ramp */
+		private final double totalShift;
+		
+		/** The number of pulls the ramp lasts */
+		private final long length;
+		
+		/**
+		 * Construct a new linear drift
+		 * @param totalShift the shift at the end of the ramp
+		 * @param length the number of pulls the ramp lasts
+		 */
+		public Linear(double totalShift, long length)
+		{
+			this.totalShift = totalShift;
+			this.length = length;
+		}
+		
+		@Override
+		public double shift(long time)
+		{
+			if (time >= length) return totalShift;
+			return totalShift * time / length;
+		}
+	}
+	
+	/**
+	 * The mean time is shifted by a different amount in each of several equal pieces of the
+	 * trial. After the last piece, its shift remains.
+	 */
+	public static class Piecewise extends Drift
+	{
+		/** The number of pulls in each piece */
+		private final long length;
+		
+		/** The shift of each piece */
+		private final double[] shifts;
+		
+		/**
+		 * Construct a new piecewise drift
+		 * @param length the number of pulls in each piece
+		 * @param shifts the shift of each piece
+		 */
+		public Piecewise(long length, double[] shifts)
+		{
+			this.length = length;
+			this.shifts = shifts.clone();
+		}
+		
+		@Override
+		public double shift(long time)
+		{
+			return shifts[(int)Math.min(time / length, shifts.length - 1)];
+		}
+	}
+	
+	/**
+	 * The mean time alternates between its starting value and a shifted value
+	 */
+	public static class Regime extends Drift
+	{
+		/** The shift while in the second regime */
+		private final double regimeShift;
+		
+		/** The number of pulls each regime lasts */
+		private final long length;
+		
+		/** How far into the cycle the supplier starts, in pulls */
+		private final long phase;
+		
+		/**
+		 * Construct a new regime-switching drift
+		 * @param regimeShift the shift while in the second regime
+		 * @param length the number of pulls each regime lasts
+		 * @param phase how far into the cycle the supplier starts, in pulls
+		 */
+		public Regime(double regimeShift, long length, long phase)
+		{
+			this.regimeShift = regimeShift;
+			this.length = length;
+			this.phase = phase;
+		}
+		
+		@Override
+		public double shift(long time)
+		{
+			return ((time + phase) / length) % 2 == 0 ? 0 : regimeShift;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.zkxs.supplychain;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets whose width grows with the duration, so that every duration
+ * up to {@link Long#MAX_VALUE} is kept to within an eighth of its value in a fixed, small
+ * number of buckets. Recording is a single atomic increment, and any number of threads may
+ * record at once.
+ */
+public class LatencyHistogram
+{
+	/** Each power of 2 is split into 2 to the power of this many buckets */
+	private static final int SUB_BITS = 3;
+	
+	/** The number of buckets each power of 2 is split into */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	/** The number of buckets needed to cover every non-negative long */
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+	
+	/** The number of durations in each bucket */
+	private final AtomicLongArray counts;
+	
+	/** The sum of every duration recorded */
+	private final StripedCounter total;
+	
+	/**
+	 * Construct a new, empty histogram
+	 */
+	public LatencyHistogram()
+	{
+		counts = new AtomicLongArray(BUCKETS);
+		total = new StripedCounter();
+	}
+	
+	/**
+	 * Record a duration
+	 * @param duration the duration, usually in nanoseconds. Negative durations count as 0.
+	 */
+	public void record(long duration)
+	{
+		if (duration < 0)
+		{
+			duration = 0;
+		}
+		
+		counts.incrementAndGet(bucketOf(duration));
+		total.add(duration);
+	}
+	
+	/**
+	 * Find the bucket a duration belongs in
+	 * @param duration a duration, at least 0
+	 * @return the index of the bucket
+	 */
+	static int bucketOf(long duration)
+	{
+		if (duration < SUB_BUCKETS) // small durations each get their own bucket
+		{
+			return (int)duration;
+		}
+		
+		// the highest bit picks the power of 2, the bits below it pick the bucket within it
+		final int exponent = 63 - Long.numberOfLeadingZeros(duration);
+		final int sub = (int)(duration >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	/**
+	 * Get the smallest duration that belongs in a bucket
+	 * @param bucket the index of the bucket
+	 * @return the smallest duration in the bucket
+	 */
+	static long lowestInBucket(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		
+		final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		return (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+	}
+	
+	/**
+	 * Get the largest duration that belongs in a bucket
+	 * @param bucket the index of the bucket
+	 * @return the largest duration in the bucket
+	 */
+	static long highestInBucket(int bucket)
+	{
+		if (bucket == BUCKETS - 1)
+		{
+			return Long.MAX_VALUE;
+		}
+		
+		return lowestInBucket(bucket + 1) - 1;
+	}
+	
+	/**
+	 * Get the number of durations recorded
+	 * @return the number of durations recorded
+	 */
+	public long getCount()
+	{
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			count += counts.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Get the mean of the durations recorded
+	 * @return the mean duration, or NaN if nothing has been recorded
+	 */
+	public double getMean()
+	{
+		return (double)total.sum() / getCount();
+	}
+	
+	/**
+	 * Estimate a percentile of the durations recorded
+	 * @param q the percentile, between 0 and 1
+	 * @return the largest duration in the bucket holding the percentile, which is at most an
+	 * eighth too high, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double q)
+	{
+		// copy the counts so that they add up even while other threads record
+		final long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		
+		if (count == 0)
+		{
+			return 0;
+		}
+		
+		// the rank of the percentile, counting from 1
+		final long rank = Math.max(1, (long)Math.ceil(q * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= rank)
+			{
+				return highestInBucket(i);
+			}
+		}
+		
+		return highestInBucket(BUCKETS - 1);
+	}
+}
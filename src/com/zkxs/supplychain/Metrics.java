@@ -0,0 +1,149 @@
+package com.zkxs.supplychain;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counters and latency histograms of the work the simulation does. Metrics are only
+ * collected when the <code>supplychain.metrics</code> system property is <code>true</code>
+ * at startup. {@link #ENABLED} is a constant, so when it is <code>false</code> every
+ * <code>if (Metrics.ENABLED)</code> block is compiled away and collecting costs nothing.
+ */
+public class Metrics
+{
+	/** <code>true</code> if metrics are being collected */
+	public static final boolean ENABLED = Boolean.getBoolean("supplychain.metrics");
+	
+	/** The number of trials run */
+	public static final StripedCounter TRIALS = new StripedCounter();
+	
+	/** The number of explores started, by every agent */
+	public static final StripedCounter EXPLORES = new StripedCounter();
+	
+	/** The number of arm pulls, by every agent */
+	public static final StripedCounter PULLS = new StripedCounter();
+	
+	/** The number of samples drawn from distributions */
+	public static final StripedCounter SAMPLES = new StripedCounter();
+	
+	/** The number of times an arm was re-entered in a ranked list */
+	public static final StripedCounter RANK_UPDATES = new StripedCounter();
+	
+	/** The time taken to reset an agent, in nanoseconds */
+	public static final LatencyHistogram RESET_LATENCY = new LatencyHistogram();
+	
+	/** The time taken to select arms, in nanoseconds, by algorithm name */
+	private static final ConcurrentMap<String, LatencyHistogram> selectLatencies =
+			new ConcurrentHashMap<String, LatencyHistogram>();
+	
+	/** The time of the last dump, in nanoseconds, for working out rates */
+	private static long lastDumpTime = System.nanoTime();
+	
+	/** The number of pulls at the last dump */
+	private static long lastDumpPulls = 0;
+	
+	/**
+	 * Cannot be instantiated, static access only
+	 */
+	private Metrics(){}
+	
+	/**
+	 * Get the histogram of the time an algorithm takes to select arms. Every algorithm with
+	 * the same name shares a histogram. This is meant to be looked up once per agent, not once
+	 * per selection.
+	 * @param algorithm the algorithm
+	 * @return the histogram for the algorithm
+	 */
+	public static LatencyHistogram selectLatency(Algorithm algorithm)
+	{
+		final String name = algorithm.getName();
+		LatencyHistogram histogram = selectLatencies.get(name);
+		
+		if (histogram == null)
+		{
+			final LatencyHistogram created = new LatencyHistogram();
+			histogram = selectLatencies.putIfAbsent(name, created);
+			if (histogram == null)
+			{
+				histogram = created;
+			}
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * Print every counter and histogram
+	 * @param stream the stream to print to
+	 */
+	public static synchronized void dump(PrintStream stream)
+	{
+		final long now = System.nanoTime();
+		final long pulls = PULLS.sum();
+		final double pullRate = (pulls - lastDumpPulls) / ((now - lastDumpTime) / 1e9);
+		lastDumpTime = now;
+		lastDumpPulls = pulls;
+		
+		stream.printf("trials %d, explores %d, pulls %d (%.0f/s), samples %d, rank updates %d\n",
+				TRIALS.sum(), EXPLORES.sum(), pulls, pullRate, SAMPLES.sum(), RANK_UPDATES.sum());
+		printLatency(stream, "reset", RESET_LATENCY);
+		
+		for (Map.Entry<String, LatencyHistogram> entry : selectLatencies.entrySet())
+		{
+			printLatency(stream, "select " + entry.getKey(), entry.getValue());
+		}
+		
+		stream.flush();
+	}
+	
+	/**
+	 * Print a summary of one histogram
+	 * @param stream the stream to print to
+	 * @param name what the histogram measures
+	 * @param histogram the histogram
+	 */
+	private static void printLatency(PrintStream stream, String name, LatencyHistogram histogram)
+	{
+		final long count = histogram.getCount();
+		if (count == 0) return; // nothing to say
+		
+		stream.printf("    %-30s n=%d mean=%.0fns p50=%dns p99=%dns p99.9=%dns\n", name, count,
+				histogram.getMean(), histogram.getPercentile(0.5), histogram.getPercentile(0.99),
+				histogram.getPercentile(0.999));
+	}
+	
+	/**
+	 * Start a background thread that dumps every counter and histogram periodically. The
+	 * thread is a daemon, so it does not keep the simulation running.
+	 * @param stream the stream to print to
+	 * @param periodMillis the time between dumps, in milliseconds
+	 * @return the thread, which stops when interrupted
+	 */
+	public static Thread startDumping(final PrintStream stream, final long periodMillis)
+	{
+		final Thread thread = new Thread("metrics")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (!isInterrupted())
+					{
+						Thread.sleep(periodMillis);
+						dump(stream);
+					}
+				}
+				catch (InterruptedException e)
+				{
+					// asked to stop
+				}
+			}
+		};
+		
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+}
@@ -0,0 +1,17 @@
+package com.zkxs.supplychain;
+/**
+ * An optional extension of {@link Algorithm} for algorithms that keep statistics of their own
+ * about each pull, such as discounted or windowed averages, which {@link ArmMemory} does not
+ * keep. Agents detect this interface and hand every pull to the algorithm as it is recorded,
+ * in the order the pulls complete, so the algorithm never has to work out what changed.
+ */
+public interface ObservingAlgorithm extends Algorithm
+{
+	/**
+	 * Observe completed pulls of an arm. This is called after the arm's memory is updated.
+	 * @param arm The index of the arm pulled
+	 * @param pulls The number of pulls, more than 1 only when several pulls are recorded at once
+	 * @param time The time each pull took, or their mean time when several are recorded at once
+	 */
+	public void observe(int arm, int pulls, double time);
+}
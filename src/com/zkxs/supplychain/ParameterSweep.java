@@ -0,0 +1,256 @@
+package com.zkxs.supplychain;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.distribution.RealDistribution;
+
+/**
+ * Runs every combination of budget, scale, distribution, tree shape and algorithm. Each
+ * combination is a cell with a tree of its own, so cells share no simulation state and are
+ * run in parallel on a work-stealing pool. The result of each cell is written as soon as it
+ * is done, one tab-separated line per cell, so a long sweep can be watched and an interrupted
+ * sweep keeps what it finished.
+ */
+public class ParameterSweep
+{
+	/**
+	 * Creates the distribution of a cell. Distributions keep their own random number
+	 * generators, which are not thread safe, so every cell needs its own.
+	 */
+	public interface DistributionFactory
+	{
+		/**
+		 * Create a new distribution
+		 * @return the new distribution
+		 */
+		public RealDistribution create();
+		
+		/**
+		 * Get a short name for the distributions this creates
+		 * @return a short name for the distributions
+		 */
+		public String getName();
+	}
+	
+	/**
+	 * Creates the algorithm of a cell. Some algorithms are constructed with the budget, so
+	 * the budget of the cell is passed in.
+	 */
+	public interface AlgorithmFactory
+	{
+		/**
+		 * Create a new algorithm
+		 * @param budget the budget of the root agent
+		 * @return the new algorithm
+		 */
+		public Algorithm create(double budget);
+	}
+	
+	/** The header line of the output, naming each column */
+	public static final String HEADER = "budget\tscale\tdistribution\tshape\talgorithm\ttrials\tmean time\tstandard error\tbest pulls";
+	
+	/** The budgets of the root agent */
+	private final double[] budgets;
+	
+	/** The scales of the suppliers */
+	private final double[] scales;
+	
+	/** The distributions of the suppliers */
+	private final DistributionFactory[] distributions;
+	
+	/** The shapes of the trees */
+	private final TreeShape[] shapes;
+	
+	/** The algorithms of the agents */
+	private final AlgorithmFactory[] algorithms;
+	
+	/** The number of trials in each cell */
+	private final int trials;
+	
+	/**
+	 * Construct a new sweep over the cartesian product of the given values
+	 * @param budgets the budgets of the root agent
+	 * @param scales the scales of the suppliers
+	 * @param distributions the distributions of the suppliers
+	 * @param shapes the shapes of the trees
+	 * @param algorithms the algorithms of the agents
+	 * @param trials the number of trials in each cell
+	 */
+	public ParameterSweep(double[] budgets, double[] scales, DistributionFactory[] distributions,
+			TreeShape[] shapes, AlgorithmFactory[] algorithms, int trials)
+	{
+		this.budgets = budgets.clone();
+		this.scales = scales.clone();
+		this.distributions = distributions.clone();
+		this.shapes = shapes.clone();
+		this.algorithms = algorithms.clone();
+		this.trials = trials;
+	}
+	
+	/**
+	 * Get the number of cells in this sweep
+	 * @return the number of combinations of parameters
+	 */
+	public int getCellCount()
+	{
+		return budgets.length * scales.length * distributions.length * shapes.length * algorithms.length;
+	}
+	
+	/**
+	 * Get the number of trials in this sweep
+	 * @return the number of trials in every cell put together
+	 */
+	public long getTotalTrials()
+	{
+		return (long)getCellCount() * trials;
+	}
+	
+	/**
+	 * Run every cell and wait for all of them to finish. The header is written first, then
+	 * one line per cell in the order the cells finish.
+	 * @param out the stream to write results to
+	 * @param parallelism the number of threads to run cells on
+	 * @param progress the reporter to count trials with, or <code>null</code>
+	 */
+	public void run(final PrintStream out, int parallelism, final ProgressReporter progress)
+	{
+		out.println(HEADER);
+		out.flush();
+		
+		// cells vary the algorithm fastest, so neighboring lines compare algorithms
+		final ArrayList<Cell> cells = new ArrayList<Cell>(getCellCount());
+		for (double budget : budgets)
+		{
+			for (double scale : scales)
+			{
+				for (DistributionFactory distribution : distributions)
+				{
+					for (TreeShape shape : shapes)
+					{
+						for (AlgorithmFactory algorithm : algorithms)
+						{
+							cells.add(new Cell(budget, scale, distribution, shape, algorithm, out, progress));
+						}
+					}
+				}
+			}
+		}
+		
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			pool.invoke(new RecursiveAction()
+			{
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected void compute()
+				{
+					invokeAll(cells);
+				}
+			});
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * One combination of parameters, run on a tree of its own
+	 */
+	private class Cell extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		/** The budget of the root agent */
+		private final double budget;
+		
+		/** The scale of the suppliers */
+		private final double scale;
+		
+		/** The distribution of the suppliers */
+		private final DistributionFactory distribution;
+		
+		/** The shape of the tree */
+		private final TreeShape shape;
+		
+		/** The algorithm of the agents */
+		private final AlgorithmFactory algorithm;
+		
+		/** The stream to write the result to */
+		private final PrintStream out;
+		
+		/** The reporter to count trials with, or <code>null</code> */
+		private final ProgressReporter progress;
+		
+		/**
+		 * Construct a new cell
+		 * @param budget the budget of the root agent
+		 * @param scale the scale of the suppliers
+		 * @param distribution the distribution of the suppliers
+		 * @param shape the shape of the tree
+		 * @param algorithm the algorithm of the agents
+		 * @param out the stream to write the result to
+		 * @param progress the reporter to count trials with, or <code>null</code>
+		 */
+		Cell(double budget, double scale, DistributionFactory distribution, TreeShape shape,
+				AlgorithmFactory algorithm, PrintStream out, ProgressReporter progress)
+		{
+			this.budget = budget;
+			this.scale = scale;
+			this.distribution = distribution;
+			this.shape = shape;
+			this.algorithm = algorithm;
+			this.out = out;
+			this.progress = progress;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			final Algorithm template = algorithm.create(budget);
+			final AgentSupplier root = (AgentSupplier)SupplyChainDriver.constructTree(shape, template,
+					distribution.create(), scale);
+			root.setProgressReporter(progress);
+			
+			double sum = 0;
+			double sumOfSquares = 0;
+			long pulls = 0;
+			long bestArmPulls = 0;
+			
+			for (int trial = 0; trial < trials; trial++)
+			{
+				// every agent resets on its first explore
+				root.beginTrial();
+				root.explore(budget);
+				
+				final double timeTaken = root.getTotalTimeTaken();
+				sum += timeTaken;
+				sumOfSquares += timeTaken * timeTaken;
+				pulls += root.getTotalPulls();
+				bestArmPulls += root.getBestArmPulls();
+				
+				if (progress != null)
+				{
+					progress.trialCompleted();
+				}
+			}
+			
+			final double mean = sum / trials;
+			final double variance = Math.max(0, sumOfSquares / trials - mean * mean) * trials / (trials - 1);
+			final String line = String.format("%s\t%s\t%s\t%s\t%s\t%d\t%.4f\t%.4f\t%.4f", budget, scale,
+					distribution.getName(), shape, template.getName(), trials, mean,
+					Math.sqrt(variance / trials), (double)bestArmPulls / pulls);
+					
+			// keep lines whole and get them out promptly
+			synchronized (out)
+			{
+				out.println(line);
+				out.flush();
+			}
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.zkxs.supplychain;
+import java.io.PrintStream;
+
+/**
+ * Prints a one line status of a long run periodically: trials completed, the rates of trials
+ * and of samples drawn from leaf suppliers, and an estimate of the time left. Workers only add to lock-free counters, and all of the
+ * arithmetic and printing happens on the reporter's own thread, so reporting does not slow
+ * the workers down.
+ */
+public class ProgressReporter
+{
+	/** The number of trials the run will complete */
+	private final long totalTrials;
+	
+	/** The number of trials completed */
+	private final StripedCounter trials;
+	
+	/** The number of samples drawn from leaf suppliers */
+	private final StripedCounter samples;
+	
+	/** The stream status lines are printed to */
+	private final PrintStream stream;
+	
+	/** The time between status lines, in milliseconds */
+	private final long periodMillis;
+	
+	/** What the run is working on now, printed at the end of the status line */
+	private volatile String label;
+	
+	/** The time the run started, in nanoseconds */
+	private long startTime;
+	
+	/** The thread printing status lines, or <code>null</code> if not started */
+	private Thread thread;
+	
+	/** The time of the last status line, in nanoseconds, for working out rates */
+	private long lastTime;
+	
+	/** The number of trials at the last status line */
+	private long lastTrials;
+	
+	/** The number of samples at the last status line */
+	private long lastSamples;
+	
+	/**
+	 * Construct a new progress reporter
+	 * @param totalTrials the number of trials the run will complete
+	 * @param stream the stream to print status lines to
+	 * @param periodMillis the time between status lines, in milliseconds
+	 */
+	public ProgressReporter(long totalTrials, PrintStream stream, long periodMillis)
+	{
+		this.totalTrials = totalTrials;
+		this.stream = stream;
+		this.periodMillis = periodMillis;
+		trials = new StripedCounter();
+		samples = new StripedCounter();
+		label = "";
+	}
+	
+	/**
+	 * Record a completed trial. Any number of threads may call this at once.
+	 */
+	public void trialCompleted()
+	{
+		trials.increment();
+	}
+	
+	/**
+	 * Record samples drawn from leaf suppliers. Any number of threads may call this at once.
+	 * @param count the number of samples drawn
+	 * @see AgentSupplier#setProgressReporter(ProgressReporter)
+	 */
+	public void samplesDrawn(long count)
+	{
+		samples.add(count);
+	}
+	
+	/**
+	 * Set what the run is working on now, such as the budget and algorithm
+	 * @param label a short description, printed at the end of each status line
+	 */
+	public void setLabel(String label)
+	{
+		this.label = label;
+	}
+	
+	/**
+	 * Start printing status lines in the background. The thread is a daemon, so it does not
+	 * keep the run going.
+	 */
+	public synchronized void start()
+	{
+		startTime = System.nanoTime();
+		lastTime = startTime;
+		lastTrials = trials.sum();
+		lastSamples = samples.sum();
+		
+		thread = new Thread("progress")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (!isInterrupted())
+					{
+						Thread.sleep(periodMillis);
+						reportIfRunning();
+					}
+				}
+				catch (InterruptedException e)
+				{
+					// asked to stop
+				}
+			}
+		};
+		
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stop printing status lines, and print a final one unless no trial has completed since
+	 * the last one
+	 */
+	public synchronized void stop()
+	{
+		if (thread != null)
+		{
+			thread.interrupt();
+			thread = null;
+			
+			if (trials.sum() != lastTrials)
+			{
+				report();
+			}
+		}
+	}
+	
+	/**
+	 * Print a status line, unless {@link #stop()} got here first
+	 */
+	private synchronized void reportIfRunning()
+	{
+		if (thread != null)
+		{
+			report();
+		}
+	}
+	
+	/**
+	 * Print a status line
+	 */
+	private void report()
+	{
+		final long now = System.nanoTime();
+		final long trialsDone = trials.sum();
+		final long samplesDone = samples.sum();
+		final double elapsed = (now - startTime) / 1e9;
+		final double interval = (now - lastTime) / 1e9;
+		
+		// rates are since the last line, but the rate over the whole run is steadier, so it is used for the estimate
+		final double trialRate = (trialsDone - lastTrials) / interval;
+		final double sampleRate = (samplesDone - lastSamples) / interval;
+		final double remaining = trialsDone == 0 ? Double.NaN : (totalTrials - trialsDone) / (trialsDone / elapsed);
+		lastTime = now;
+		lastTrials = trialsDone;
+		lastSamples = samplesDone;
+		
+		stream.printf("[progress] %d/%d trials (%.1f%%), %.1f trials/s, %.0f leaf samples/s, elapsed %s, ETA %s  %s\n",
+				trialsDone, totalTrials, 100.0 * trialsDone / totalTrials, trialRate, sampleRate,
+				formatDuration(elapsed), formatDuration(remaining), label);
+		stream.flush();
+	}
+	
+	/**
+	 * Format a duration as hours, minutes and seconds
+	 * @param seconds the duration, in seconds
+	 * @return the duration as <code>h:mm:ss</code>, or <code>?</code> if it is unknown
+	 */
+	static String formatDuration(double seconds)
+	{
+		if (Double.isNaN(seconds) || Double.isInfinite(seconds))
+		{
+			return "?";
+		}
+		
+		final long total = Math.max(0, Math.round(seconds));
+		return String.format("%d:%02d:%02d", total / 3600, total / 60 % 60, total % 60);
+	}
+}
@@ -0,0 +1,207 @@
+package com.zkxs.supplychain;
+import java.util.Arrays;
+
+/**
+ * Summarizes a stream of numbers in bounded memory so that any quantile of the stream can be
+ * estimated afterwards. The numbers are kept in a stack of compactors: level <i>h</i> holds
+ * numbers that each stand for 2<sup><i>h</i></sup> of the original numbers. When a level fills
+ * up it is sorted and every other number is promoted to the level above, alternating which
+ * half is kept so that the errors cancel out. This is the equal-capacity variant of the KLL
+ * sketch (Karnin, Lang and Liberty, 2016), and uses memory proportional to
+ * <i>k</i> log(<i>n</i>/<i>k</i>). The rank error is roughly log(<i>n</i>/<i>k</i>)/<i>k</i>.
+ */
+public class QuantileSketch
+{
+	/** The capacity of each level, always even */
+	private final int k;
+	
+	/** The numbers held by each level */
+	private double[][] levels;
+	
+	/** The number of numbers held by each level */
+	private int[] sizes;
+	
+	/** The number of times each level has been compacted, used to alternate the kept half */
+	private int[] compactions;
+	
+	/** The read position in each level while answering a query */
+	private int[] cursors;
+	
+	/** The number of levels in use */
+	private int height;
+	
+	/** The number of numbers added */
+	private long count;
+	
+	/**
+	 * Construct a new, empty sketch
+	 * @param k The capacity of each level. Larger is more accurate but uses more memory.
+	 */
+	public QuantileSketch(int k)
+	{
+		if (k < 2)
+		{
+			throw new IllegalArgumentException("Sketch capacity must be at least 2");
+		}
+		
+		this.k = k + (k & 1); // round up to even
+		levels = new double[1][this.k];
+		sizes = new int[1];
+		compactions = new int[1];
+		cursors = new int[1];
+		height = 1;
+		count = 0;
+	}
+	
+	/**
+	 * Discard every number added so far. Memory already allocated is kept for reuse.
+	 */
+	public void clear()
+	{
+		Arrays.fill(sizes, 0);
+		Arrays.fill(compactions, 0);
+		height = 1;
+		count = 0;
+	}
+	
+	/**
+	 * Get the number of numbers added so far
+	 * @return the number of numbers added so far
+	 */
+	public long size()
+	{
+		return count;
+	}
+	
+	/**
+	 * Add a number to the sketch
+	 * @param x the number to add
+	 */
+	public void add(double x)
+	{
+		if (sizes[0] == k)
+		{
+			compact(0);
+		}
+		
+		levels[0][sizes[0]++] = x;
+		count++;
+	}
+	
+	/**
+	 * Estimate a quantile of the numbers added so far
+	 * @param q The quantile to estimate, between 0 and 1 (0.5 is the median)
+	 * @return the estimated quantile, or NaN if no numbers have been added
+	 */
+	public double getQuantile(double q)
+	{
+		if (q < 0 || q > 1)
+		{
+			throw new IllegalArgumentException("Quantile must be between 0 and 1");
+		}
+		
+		if (count == 0)
+		{
+			return Double.NaN;
+		}
+		
+		// merge the sorted levels, walking up the weights until the target rank is reached
+		final double target = Math.max(q * count, 1);
+		for (int h = 0; h < height; h++)
+		{
+			Arrays.sort(levels[h], 0, sizes[h]);
+			cursors[h] = 0;
+		}
+		
+		long rank = 0;
+		double value = Double.NaN;
+		while (rank < target)
+		{
+			// find the smallest unread number of any level
+			int smallest = -1;
+			for (int h = 0; h < height; h++)
+			{
+				if (cursors[h] < sizes[h]
+						&& (smallest == -1 || levels[h][cursors[h]] < levels[smallest][cursors[smallest]]))
+				{
+					smallest = h;
+				}
+			}
+			
+			if (smallest == -1) // rounding of the target, everything has been read
+			{
+				break;
+			}
+			
+			value = levels[smallest][cursors[smallest]++];
+			rank += 1L << smallest;
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Promote half of a full level to the level above, making room in it
+	 * @param h the level to compact
+	 */
+	private void compact(int h)
+	{
+		if (h + 1 == height)
+		{
+			addLevel();
+		}
+		
+		// make sure the level above has room for half of this level
+		if (sizes[h + 1] + sizes[h] / 2 > k)
+		{
+			compact(h + 1);
+		}
+		
+		final double[] level = levels[h];
+		final double[] above = levels[h + 1];
+		final int size = sizes[h];
+		
+		Arrays.sort(level, 0, size);
+		
+		// keep every other number, alternating between the odd and even ones
+		final int paired = size & ~1;
+		for (int i = compactions[h]++ & 1; i < paired; i += 2)
+		{
+			above[sizes[h + 1]++] = level[i];
+		}
+		
+		// an odd leftover stays behind so no weight is lost
+		if ((size & 1) == 1)
+		{
+			level[0] = level[size - 1];
+			sizes[h] = 1;
+		}
+		else
+		{
+			sizes[h] = 0;
+		}
+	}
+	
+	/**
+	 * Start using another level, reusing or growing the preallocated storage
+	 */
+	private void addLevel()
+	{
+		if (height == levels.length)
+		{
+			levels = Arrays.copyOf(levels, height * 2);
+			sizes = Arrays.copyOf(sizes, height * 2);
+			compactions = Arrays.copyOf(compactions, height * 2);
+			cursors = Arrays.copyOf(cursors, height * 2);
+		}
+		
+		if (levels[height] == null)
+		{
+			levels[height] = new double[k];
+		}
+		
+		sizes[height] = 0;
+		compactions[height] = 0;
+		height++;
+	}
+}
@@ -0,0 +1,120 @@
+package com.zkxs.supplychain;
+import java.io.PrintStream;
+
+/**
+ * Adds up the regret counters every {@link AgentSupplier} keeps, level by level, over a
+ * number of trials. Agents given a tally with {@link AgentSupplier#setRegretTally(RegretTally)}
+ * roll what changed into it at the end of each explore, so the tree is never walked. Only
+ * agents that pulled an arm during a trial are counted.
+ */
+public class RegretTally
+{
+	/** The number of agents on each level that pulled an arm, summed over the trials */
+	private final long[] agents;
+	
+	/** The number of pulls on each level */
+	private final long[] pulls;
+	
+	/** The number of pulls of the best arm on each level */
+	private final long[] bestArmPulls;
+	
+	/** The regret on each level */
+	private final double[] regret;
+	
+	/** The number of agents on each level whose top-ranked arm was the best arm at the end of a trial */
+	private final long[] identified;
+	
+	/** The sum of the pulls at which those agents identified the best arm, on each level */
+	private final long[] identifiedAt;
+	
+	/**
+	 * Construct a new, empty tally
+	 * @param levels the number of levels of agents in the trees that will be added
+	 */
+	public RegretTally(int levels)
+	{
+		agents = new long[levels];
+		pulls = new long[levels];
+		bestArmPulls = new long[levels];
+		regret = new double[levels];
+		identified = new long[levels];
+		identifiedAt = new long[levels];
+	}
+	
+	/**
+	 * Roll what changed during one explore of an agent into this tally. Agents in subtrees
+	 * explored in parallel may call this at the same time.
+	 * @param level the depth of the agent
+	 * @param firstPulls <code>true</code> if these are the agent's first pulls this trial
+	 * @param pulls the number of pulls made
+	 * @param bestArmPulls the number of pulls of the best arm made
+	 * @param regret the regret of the pulls made
+	 * @param oldIdentifiedAt the pull at which the agent had identified the best arm before
+	 * the explore, or -1 if it had not
+	 * @param identifiedAt the pull at which the agent has identified the best arm after the
+	 * explore, or -1 if it has not
+	 */
+	synchronized void record(int level, boolean firstPulls, int pulls, int bestArmPulls, double regret,
+			int oldIdentifiedAt, int identifiedAt)
+	{
+		if (firstPulls)
+		{
+			agents[level]++;
+		}
+		
+		this.pulls[level] += pulls;
+		this.bestArmPulls[level] += bestArmPulls;
+		this.regret[level] += regret;
+		
+		// only whether the agent has identified the best arm at the end of the trial counts
+		if (oldIdentifiedAt > 0)
+		{
+			identified[level]--;
+			this.identifiedAt[level] -= oldIdentifiedAt;
+		}
+		
+		if (identifiedAt > 0)
+		{
+			identified[level]++;
+			this.identifiedAt[level] += identifiedAt;
+		}
+	}
+	
+	/**
+	 * Print one tab-separated line per level: the label, the level, the fraction of pulls
+	 * on the best arm, the regret per pull, the regret per agent per trial, the fraction of
+	 * agents that identified the best arm, and the mean pull at which they identified it
+	 * @param stream the stream to print to
+	 * @param label the first column of every line, such as the budget and algorithm
+	 */
+	public synchronized void print(PrintStream stream, String label)
+	{
+		for (int level = 0; level < agents.length; level++)
+		{
+			if (agents[level] == 0) continue; // nothing happened on this level
+			
+			stream.printf("%s\t%d\t%.4f\t%.4f\t%.4f\t%.4f\t%.2f\n", label, level,
+					(double)bestArmPulls[level] / pulls[level],
+					regret[level] / pulls[level],
+					regret[level] / agents[level],
+					(double)identified[level] / agents[level],
+					identified[level] == 0 ? Double.NaN : (double)identifiedAt[level] / identified[level]);
+		}
+	}
+	
+	/**
+	 * Empty this tally
+	 */
+	public synchronized void clear()
+	{
+		for (int level = 0; level < agents.length; level++)
+		{
+			agents[level] = 0;
+			pulls[level] = 0;
+			bestArmPulls[level] = 0;
+			regret[level] = 0;
+			identified[level] = 0;
+			identifiedAt[level] = 0;
+		}
+	}
+}
@@ -38,4 +38,15 @@ public class SimpleSupplier extends Supplier
 	{
 		return sample();
 	}
+	
+	/**
+	 * Purchase supplies from this supplier several times. The spread of the times can then
+	 * be read with {@link #getSumDeviations()}.
+	 * @param purchases the number of purchases
+	 * @return The total amount of time required to complete all of the orders
+	 */
+	public double supplySum(int purchases)
+	{
+		return sampleSum(purchases);
+	}
 }
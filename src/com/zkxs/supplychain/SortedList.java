@@ -110,6 +110,18 @@ public class SortedList<E extends Comparable <? super E>> implements Iterable<E>
 		list.clear();
 	}
 	
+	/**
+	 * Replace the contents of this list with a shallow copy of the contents of another
+	 * SortedList, reusing this list's backing storage.
+	 * (The elements themselves are not cloned)
+	 * @param toCopy The SortedList to copy.
+	 */
+	public void copyFrom(SortedList<E> toCopy)
+	{
+		list.clear();
+		list.addAll(toCopy.list);
+	}
+	
 	/**
 	 * Get an item out of the list
 	 * @param index the item's index
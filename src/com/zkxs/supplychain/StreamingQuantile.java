@@ -0,0 +1,224 @@
+package com.zkxs.supplychain;
+import java.util.Arrays;
+
+/**
+ * Estimates a single quantile of a stream of numbers in constant memory using the P-square
+ * algorithm (Jain and Chlamtac, 1985). Five markers track the minimum, the maximum, the
+ * quantile and two points halfway to it, and are nudged towards their ideal positions with
+ * a parabolic fit as numbers arrive. The first {@link #EXACT} numbers are kept, so the
+ * estimate is the exact nearest-rank quantile until more than that many have been added; the
+ * markers are then placed on the kept numbers. Explores are often short, and five markers
+ * say little about the tail of a handful of numbers.
+ */
+public class StreamingQuantile
+{
+	/** The number of markers */
+	private static final int MARKERS = 5;
+	
+	/** The number of numbers kept before switching to the markers */
+	private static final int EXACT = 64;
+	
+	/** The quantile to estimate, between 0 and 1 */
+	private final double p;
+	
+	/** The first {@link #EXACT} numbers added */
+	private final double[] kept;
+	
+	/** Marker heights, once more than {@link #EXACT} numbers are added */
+	private final double[] heights;
+	
+	/** Actual marker positions, 1-based */
+	private final int[] positions;
+	
+	/** Ideal marker positions */
+	private final double[] desired;
+	
+	/** How much each ideal position moves per number added */
+	private final double[] increments;
+	
+	/** The number of numbers added */
+	private int count;
+	
+	/**
+	 * Construct a new, empty estimator
+	 * @param p The quantile to estimate, between 0 and 1 (0.5 is the median)
+	 */
+	public StreamingQuantile(double p)
+	{
+		if (p < 0 || p > 1)
+		{
+			throw new IllegalArgumentException("Quantile must be between 0 and 1");
+		}
+		
+		this.p = p;
+		kept = new double[EXACT];
+		heights = new double[MARKERS];
+		positions = new int[MARKERS];
+		desired = new double[MARKERS];
+		increments = new double[] {0, p / 2, p, (1 + p) / 2, 1};
+		count = 0;
+	}
+	
+	/**
+	 * Discard every number added so far
+	 */
+	public void clear()
+	{
+		count = 0;
+	}
+	
+	/**
+	 * Get the number of numbers added so far
+	 * @return the number of numbers added so far
+	 */
+	public int size()
+	{
+		return count;
+	}
+	
+	/**
+	 * Add a number to the stream
+	 * @param x the number to add
+	 */
+	public void add(double x)
+	{
+		if (count < EXACT)
+		{
+			kept[count++] = x;
+			
+			if (count == EXACT) // enough numbers to place the markers
+			{
+				placeMarkers();
+			}
+			return;
+		}
+		
+		count++;
+		
+		// find the cell the number falls in, extending the extremes if needed
+		int cell;
+		if (x < heights[0])
+		{
+			heights[0] = x;
+			cell = 0;
+		}
+		else if (x >= heights[MARKERS - 1])
+		{
+			heights[MARKERS - 1] = x;
+			cell = MARKERS - 2;
+		}
+		else
+		{
+			cell = 0;
+			while (x >= heights[cell + 1])
+			{
+				cell++;
+			}
+		}
+		
+		// every marker above the cell moves up by one
+		for (int i = cell + 1; i < MARKERS; i++)
+		{
+			positions[i]++;
+		}
+		for (int i = 0; i < MARKERS; i++)
+		{
+			desired[i] += increments[i];
+		}
+		
+		// nudge the middle markers towards their ideal positions
+		for (int i = 1; i < MARKERS - 1; i++)
+		{
+			final double offset = desired[i] - positions[i];
+			if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+					|| (offset <= -1 && positions[i - 1] - positions[i] < -1))
+			{
+				final int direction = offset > 0 ? 1 : -1;
+				
+				double height = parabolic(i, direction);
+				if (height <= heights[i - 1] || height >= heights[i + 1])
+				{
+					// the parabola overshot a neighbor, fall back to linear interpolation
+					height = heights[i] + direction * (heights[i + direction] - heights[i])
+							/ (positions[i + direction] - positions[i]);
+				}
+				
+				heights[i] = height;
+				positions[i] += direction;
+			}
+		}
+	}
+	
+	/**
+	 * Add the same number to the stream several times
+	 * @param x the number to add
+	 * @param times the number of times to add it
+	 */
+	public void add(double x, int times)
+	{
+		for (int i = 0; i < times; i++)
+		{
+			add(x);
+		}
+	}
+	
+	/**
+	 * Get the current estimate of the quantile
+	 * @return the current estimate of the quantile, or NaN if no numbers have been added
+	 */
+	public double get()
+	{
+		if (count == 0)
+		{
+			return Double.NaN;
+		}
+		else if (count <= EXACT)
+		{
+			// exact nearest-rank quantile. Sorting in place is harmless, as only the
+			// multiset of kept numbers matters.
+			Arrays.sort(kept, 0, count);
+			final int rank = (int)Math.ceil(p * count);
+			return kept[Math.max(rank - 1, 0)];
+		}
+		else
+		{
+			return heights[2];
+		}
+	}
+	
+	/**
+	 * Place the markers on the kept numbers at their ideal positions, as if they had been
+	 * tracking the numbers from the start
+	 */
+	private void placeMarkers()
+	{
+		Arrays.sort(kept);
+		
+		for (int i = 0; i < MARKERS; i++)
+		{
+			desired[i] = 1 + (EXACT - 1) * increments[i];
+			
+			// every marker needs a position of its own
+			final int lowest = i == 0 ? 1 : positions[i - 1] + 1;
+			final int highest = EXACT - (MARKERS - 1 - i);
+			positions[i] = Math.max(lowest, Math.min(highest, (int)Math.round(desired[i])));
+			heights[i] = kept[positions[i] - 1];
+		}
+	}
+	
+	/**
+	 * Predict the new height of a marker by fitting a parabola through it and its neighbors
+	 * @param i the marker to move
+	 * @param direction the direction the marker moves in, 1 or -1
+	 * @return the predicted height
+	 */
+	private double parabolic(int i, int direction)
+	{
+		final double below = positions[i] - positions[i - 1];
+		final double above = positions[i + 1] - positions[i];
+		
+		return heights[i] + direction / (double)(positions[i + 1] - positions[i - 1])
+				* ((below + direction) * (heights[i + 1] - heights[i]) / above
+				+ (above - direction) * (heights[i] - heights[i - 1]) / below);
+	}
+}
@@ -0,0 +1,60 @@
+package com.zkxs.supplychain;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can add to at once without contending on a single value.
+ * Each thread adds to one of several stripes, chosen by its id, and reading the counter sums
+ * the stripes. Stripes are spaced a cache line apart so that threads on different stripes do
+ * not share a cache line.
+ */
+public class StripedCounter
+{
+	/** The number of stripes, a power of 2 */
+	private static final int STRIPES = Integer.highestOneBit(
+			Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+	
+	/** The distance between stripes, in longs: one 64 byte cache line */
+	private static final int SPACING = 8;
+	
+	/** The stripes, {@link #SPACING} apart */
+	private final AtomicLongArray stripes;
+	
+	/**
+	 * Construct a new counter at 0
+	 */
+	public StripedCounter()
+	{
+		stripes = new AtomicLongArray(STRIPES * SPACING);
+	}
+	
+	/**
+	 * Add to this counter
+	 * @param amount the amount to add
+	 */
+	public void add(long amount)
+	{
+		stripes.getAndAdd(((int)Thread.currentThread().getId() & (STRIPES - 1)) * SPACING, amount);
+	}
+	
+	/**
+	 * Add 1 to this counter
+	 */
+	public void increment()
+	{
+		add(1);
+	}
+	
+	/**
+	 * Get the value of this counter. Additions made while this runs may or may not be seen.
+	 * @return the sum of every stripe
+	 */
+	public long sum()
+	{
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++)
+		{
+			sum += stripes.get(i * SPACING);
+		}
+		return sum;
+	}
+}
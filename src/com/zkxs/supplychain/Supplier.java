@@ -1,6 +1,7 @@
 package com.zkxs.supplychain;
 import java.util.ArrayList;
 
+import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.RealDistribution;
 
 /**
@@ -13,6 +14,9 @@ public abstract class Supplier
 	/** Cost to use our services */
 	private final double cost;
 	
+	/** Cost to use our services, in {@link Budget} units */
+	private final long costUnits;
+	
 	/** Offset of the distribution */
 	private final double offset;
 	
@@ -25,15 +29,41 @@ public abstract class Supplier
 	/** The distribuiton of this arm's values */
 	private RealDistribution distribution;
 	
+	/** How this arm's mean time changes over a trial, or <code>null</code> if it never changes */
+	private Drift drift;
+	
+	/**
+	 * The agent buying from this supplier, or <code>null</code> for the root. Its pulls this
+	 * trial are the clock {@link #drift} follows.
+	 */
+	private AgentSupplier buyer;
+	
+	/** The sum of the squared differences from their mean of the samples summed by the last {@link #sampleSum(int)} */
+	private double sumDeviations;
+	
+	/**
+	 * The most degrees of freedom {@link #sampleChiSquared(int)} draws exactly, as a sum of
+	 * squared normal samples. The approximation it uses beyond that is poor at few degrees.
+	 */
+	private static final int EXACT_CHI_SQUARED = 30;
+	
 	/**
 	 * Constructs a new SimpleSupplier
 	 * @param cost The cost to use this supplier
 	 * @param meanTime Average time this supplier takes to provide services
 	 * @param standardDeviation Standard deviation of the service time
+	 * @throws IllegalArgumentException If the cost rounds to less than one {@link Budget} unit,
+	 * since a free pull would let a budget buy pulls without end
 	 */
 	public Supplier(double cost, double meanTime, RealDistribution distribution, double scale)
 	{
 		this.cost = cost;
+		this.costUnits = Budget.toUnits(cost);
+		if (costUnits <= 0)
+		{
+			throw new IllegalArgumentException("Cost must be at least one budget unit");
+		}
+		
 		this.distribution = distribution;
 		this.scale = scale;
 		
@@ -66,7 +96,146 @@ public abstract class Supplier
 	 */
 	protected double sample()
 	{
-		return (distribution.sample() - distribution.getNumericalMean() ) * scale + offset;
+		return sample(drift == null ? 0 : clock());
+	}
+	
+	/**
+	 * Get a sample at a point in the trial
+	 * @param time the trial's clock, as returned by {@link #clock()}
+	 * @return a sample
+	 */
+	private double sample(long time)
+	{
+		final double offset = drift == null ? this.offset : this.offset + drift.shift(time);
+		
+		// a zero scale collapses the distribution onto its offset, no need to draw
+		if (scale == 0) return offset;
+		return (SupplyExecutor.sample(distribution) - distribution.getNumericalMean() ) * scale + offset;
+	}
+	
+	/**
+	 * Get the sum of several samples. This takes O(1) time when the distribution of
+	 * the sum is known: a zero scale, or a normal distribution (the sum of n normal
+	 * samples is normal with n times the mean and sqrt(n) times the standard deviation).
+	 * Otherwise the samples are drawn and summed individually. The spread of the samples
+	 * is kept as well, and can be read with {@link #getSumDeviations()}.
+	 * @param samples the number of samples to sum
+	 * @return the sum of the samples
+	 */
+	protected double sampleSum(int samples)
+	{
+		if (drift == null && scale == 0)
+		{
+			sumDeviations = 0;
+			return samples * offset;
+		}
+		
+		if (drift == null && distribution instanceof NormalDistribution)
+		{
+			/*
+			 * The mean and the spread of normal samples are independent. Their squared
+			 * differences from their mean sum to the variance times a chi-squared variable
+			 * with one degree of freedom fewer than there are samples.
+			 */
+			final double variance = distribution.getNumericalVariance() * scale * scale;
+			sumDeviations = variance == 0 ? 0 : variance * sampleChiSquared(samples - 1);
+			
+			return (SupplyExecutor.sample(distribution) - distribution.getNumericalMean()) * Math.sqrt(samples) * scale
+					+ samples * offset;
+		}
+		
+		// Welford's method, so the spread comes out of the same pass as the sum
+		final long start = drift == null ? 0 : clock();
+		double sum = 0;
+		double mean = 0;
+		double deviations = 0;
+		for (int i = 0; i < samples; i++)
+		{
+			// each sample stands for one pull, and the buyer has not counted them yet
+			final double sample = sample(start + i);
+			final double delta = sample - mean;
+			mean += delta / (i + 1);
+			deviations += delta * (sample - mean);
+			sum += sample;
+		}
+		sumDeviations = deviations;
+		return sum;
+	}
+	
+	/**
+	 * Get the trial's clock, which {@link #drift} is a function of. Every supplier of an
+	 * agent reads the same clock, and it starts over when the agent resets for a new trial.
+	 * @return the number of pulls the buyer has made this trial
+	 */
+	private long clock()
+	{
+		return buyer == null ? 0 : buyer.getTotalPulls();
+	}
+	
+	/**
+	 * Set the agent buying from this supplier, whose pulls are the clock drift follows
+	 * @param buyer the agent buying from this supplier
+	 */
+	void setBuyer(AgentSupplier buyer)
+	{
+		this.buyer = buyer;
+	}
+	
+	/**
+	 * Draw from a chi-squared distribution. Up to {@link #EXACT_CHI_SQUARED} degrees of
+	 * freedom this sums that many squared standard normal samples, which is exact. Beyond
+	 * that it uses the Wilson-Hilferty approximation, which transforms a single normal
+	 * sample and is only accurate at many degrees of freedom. The distribution must be normal.
+	 * @param degreesOfFreedom the degrees of freedom, at least 0
+	 * @return a sample
+	 */
+	private double sampleChiSquared(int degreesOfFreedom)
+	{
+		if (degreesOfFreedom <= EXACT_CHI_SQUARED)
+		{
+			double sum = 0;
+			for (int i = 0; i < degreesOfFreedom; i++)
+			{
+				final double z = standardNormal();
+				sum += z * z;
+			}
+			return sum;
+		}
+		
+		final double z = standardNormal();
+		final double a = 2.0 / (9 * degreesOfFreedom);
+		final double cube = 1 - a + z * Math.sqrt(a);
+		return cube <= 0 ? 0 : degreesOfFreedom * cube * cube * cube;
+	}
+	
+	/**
+	 * Draw a standard normal sample from the distribution, which must be normal
+	 * @return a sample with a mean of 0 and a standard deviation of 1
+	 */
+	private double standardNormal()
+	{
+		return (SupplyExecutor.sample(distribution) - distribution.getNumericalMean())
+				/ Math.sqrt(distribution.getNumericalVariance());
+	}
+	
+	/**
+	 * Get the spread of the samples summed by the last {@link #sampleSum(int)}
+	 * @return the sum of the squared differences of the samples from their mean
+	 */
+	public double getSumDeviations()
+	{
+		return sumDeviations;
+	}
+	
+	/**
+	 * Check if every purchase from this supplier takes exactly its mean time. This is the
+	 * case for a leaf supplier with a scale of zero that does not drift.
+	 * Agents aren't allowed to use this method, that would be cheating!
+	 * @return <code>true</code> if every call to {@link #supply()} returns {@link #getMeanTime()}
+	 */
+	public boolean isDeterministic()
+	{
+		return isLeafNode() && scale == 0 && drift == null;
 	}
 	
 	/**
@@ -77,7 +246,16 @@ public abstract class Supplier
 	{
 		return cost;
 	}
-
+	
+	/**
+	 * Get the cost to use this supplier in {@link Budget} units
+	 * @return the cost to use this supplier in {@link Budget} units
+	 */
+	public long getCostUnits()
+	{
+		return costUnits;
+	}
+	
 	/**
 	 * Returns the mean time taken by this supplier.
 	 * Agents aren't allowed to use this method, that would be cheating!
@@ -97,7 +275,7 @@ public abstract class Supplier
 	{
 		return distribution;
 	}
-
+	
 	/**
 	 * Sets this arm's distribution
 	 * @param distribution This arm's distribution
@@ -111,7 +289,16 @@ public abstract class Supplier
 	{
 		this.scale = scale;
 	}
-
+	
+	/**
+	 * Sets how this arm's mean time changes over a trial
+	 * @param drift the drift, or <code>null</code> to keep the mean time fixed
+	 */
+	public void setDrift(Drift drift)
+	{
+		this.drift = drift;
+	}
+	
 	/**
 	 * Checks if this is the best arm to pull
 	 * Agents aren't allowed to use this method, that would be cheating!
@@ -132,7 +319,7 @@ public abstract class Supplier
 	{
 		this.bestArm = bestArm;
 	}
-
+	
 	@Override
 	public String toString()
 	{
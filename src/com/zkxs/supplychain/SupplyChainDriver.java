@@ -8,9 +8,6 @@ import java.util.Random;
 import org.apache.commons.math3.distribution.*;
 
 /* to-do list
- * TODO: Give all algorithms getName() method
- * TODO: Give all algorithms an init() method that the agent calls only once before getNextArm() is ever called
- * TODO: Give agents a getInitialBudget() (either absolute or an estimate) for the algorithms to look at
  * TODO: actually implement greedy
  */
 
@@ -26,6 +23,14 @@ import org.apache.commons.math3.distribution.*;
 public class SupplyChainDriver
 {	
 	public static final double COST = 1.0;                  // DEFAULT: 1
+	
+	/**
+	 * How far the cost of each supplier may stray from {@link #COST}, as a fraction of it.
+	 * Costs are drawn uniformly from <code>COST * (1 &plusmn; COST_SPREAD)</code>. 0 gives
+	 * every supplier the same cost, which lets agents take their constant cost shortcuts.
+	 * Must be less than 1, so that no supplier is free.
+	 */
+	private static final double COST_SPREAD = 0;            // DEFAULT: 0
 	private static final double MEAN_TIME_MINIMUM = 10;     // DEFAULT: 10
 	private static final double MEAN_TIME_INCREMENT = 10;   // DEFAULT: 10
 	
@@ -45,7 +50,107 @@ public class SupplyChainDriver
 	/** Tree height including root node */
 	private static final int TREE_DEPTH = 4;                // DEFAULT: 4
 	
-	/** If <code>true</code>, always use the child algorithm for child nodes */
+	/**
+	 * How an agent turns the times of the purchases it makes during one explore into the time
+	 * it reports to its parent
+	 */
+	public static final Aggregation AGGREGATION = Aggregation.MEAN; // DEFAULT: MEAN
+	
+	/** The percentile reported when {@link #AGGREGATION} is {@link Aggregation#PERCENTILE}, between 0 and 1 */
+	public static final double AGGREGATION_PERCENTILE = 0.9;        // DEFAULT: 0.9
+	
+	/** How the mean times of leaf suppliers change over the course of a trial */
+	private static final Drift.Kind DRIFT = Drift.Kind.NONE;       // DEFAULT: NONE
+	
+	/** The largest amount a drifting supplier's mean time can shift by */
+	private static final double DRIFT_MAGNITUDE = MEAN_TIME_INCREMENT; // DEFAULT: MEAN_TIME_INCREMENT
+	
+	/** The number of its buyer's pulls over which a supplier's drift plays out */
+	private static final long DRIFT_PERIOD = 500;                  // DEFAULT: 500
+	
+	/**
+	 * If greater than 0, arms only remember this many of their most recent pulls, so that
+	 * they can follow drifting suppliers. 0 remembers every pull. A window of 1 is rejected,
+	 * since a single pull says nothing about the variance of an arm.
+	 */
+	public static final int ARM_MEMORY_WINDOW = 0;                 // DEFAULT: 0
+	
+	/**
+	 * Each pull of an arm discounts the weight of its earlier pulls by this factor, so that
+	 * arms can follow drifting suppliers. 1 weighs every pull equally. Must be greater than
+	 * 0, which would only remember the last pull. Ignored when {@link #ARM_MEMORY_WINDOW} is used.
+	 */
+	public static final double ARM_MEMORY_DECAY = 1.0;             // DEFAULT: 1
+	
+	/**
+	 * The capacity of each level of the quantile sketches arms keep when
+	 * {@link ArmMemory#enableSketch()} is used, as for {@link #REPORT_ARM_PERCENTILE}. Larger
+	 * is more accurate but uses more memory.
+	 */
+	public static final int QUANTILE_SKETCH_SIZE = 128;             // DEFAULT: 128
+	
+	/**
+	 * If <code>true</code>, agents whose suppliers are all leaves collapse the remaining
+	 * pulls of their committed arm into a single draw of the sum of those pulls. This is
+	 * much faster, but the arm is only re-ranked once for the whole batch. Only applies
+	 * when {@link #AGGREGATION} is {@link Aggregation#MEAN}, as the individual times are lost.
+	 */
+	public static final boolean AGGREGATE_LEAF_PULLS = false; // DEFAULT: false
+	
+	/**
+	 * If <code>true</code>, when an agent's algorithm selects a batch of purchases from
+	 * several child agents at once, the children explore their subtrees in parallel. The
+	 * algorithm still sees the results in the order it requested them.
+	 */
+	public static final boolean PARALLEL_SUBTREES = false;   // DEFAULT: false
+	
+	/**
+	 * If greater than 0, agents buy from child agents asynchronously: each purchase runs
+	 * as a task and the agent keeps making decisions, with whatever results have come
+	 * back so far, until this many purchases are outstanding. Purchases from the same
+	 * child never overlap. 0 makes every purchase synchronous.
+	 */
+	public static final int ASYNC_PURCHASE_WINDOW = 0;       // DEFAULT: 0
+	
+	/**
+	 * If <code>true</code>, the regret counters of every agent are added up level by level
+	 * and written, for each budget and algorithm, to the <code>_regret</code> output file
+	 */
+	public static final boolean REPORT_REGRET = false;       // DEFAULT: false
+	
+	/**
+	 * If <code>true</code>, the arms of the root sketch their times, and the
+	 * {@link #AGGREGATION_PERCENTILE} time of the root's top-ranked arm is printed for each
+	 * budget and algorithm, averaged over the trials. This shows the tail of the arm the
+	 * root settled on, which its mean time hides.
+	 */
+	public static final boolean REPORT_ARM_PERCENTILE = false; // DEFAULT: false
+	
+	/**
+	 * The time between dumps of the {@link Metrics} to the <code>_metrics</code> output file,
+	 * in milliseconds, when they are enabled with <code>-Dsupplychain.metrics=true</code>
+	 */
+	private static final long METRICS_DUMP_PERIOD = 10000;   // DEFAULT: 10000
+	
+	/**
+	 * The time between status lines of the run's progress on standard error, in milliseconds.
+	 * 0 turns progress reporting off.
+	 */
+	private static final long PROGRESS_PERIOD = 0;           // DEFAULT: 0
+	
+	/**
+	 * If <code>true</code>, the driver runs the parameter sweep set up in {@link #runSweep(String)}
+	 * instead of its usual budget loop
+	 */
+	private static final boolean SWEEP = false;             // DEFAULT: false
+	
+	/** The number of threads a parameter sweep runs cells on */
+	private static final int SWEEP_THREADS = Runtime.getRuntime().availableProcessors(); // DEFAULT: availableProcessors()
+	
+	/**
+	 * If <code>true</code>, always use the child algorithm for child nodes. Sequential halving
+	 * always uses it for child nodes, which never know their whole budget up front.
+	 */
 	private static boolean fallbackOverride = false;
 	
 	final static Algorithm fallbackAlgorithm = new AlgorithmLSplit(2);
@@ -80,10 +185,55 @@ public class SupplyChainDriver
 			{}
 		}
 		
+		if (!(COST > 0 && COST_SPREAD >= 0 && COST_SPREAD < 1))
+		{
+			throw new IllegalArgumentException("Cost must be greater than 0, and cost spread at least 0 and less than 1");
+		}
+		
+		// an arm needs more than one pull's worth of memory to estimate its variance
+		if (ARM_MEMORY_WINDOW < 0 || ARM_MEMORY_WINDOW == 1)
+		{
+			throw new IllegalArgumentException("Arm memory window must be 0 or at least 2");
+		}
+		if (!(ARM_MEMORY_DECAY > 0 && ARM_MEMORY_DECAY <= 1))
+		{
+			throw new IllegalArgumentException("Arm memory decay must be greater than 0 and at most 1");
+		}
+		
+		if (SWEEP)
+		{
+			runSweep(fileLabel);
+			return;
+		}
+		
 		// set up file writing
 		PrintStream fileSummary = new PrintStream("output_" + fileLabel + ".txt", "UTF-8");
 		PrintStream fileDynamic = new PrintStream("output_" + fileLabel + "_dynamic.txt", "UTF-8");
 		PrintStream fileStatic  = new PrintStream("output_" + fileLabel + "_static.txt" , "UTF-8");
+		PrintStream fileRegret  = null;
+		
+		// one line per budget, algorithm and level of agents
+		final RegretTally regretTally = new RegretTally(TREE_DEPTH - 1);
+		if (REPORT_REGRET)
+		{
+			fileRegret = new PrintStream("output_" + fileLabel + "_regret.txt", "UTF-8");
+			fileRegret.println("budget\talgorithm\tlevel\tbest pulls\tregret/pull\tregret/agent\tidentified\tidentified at");
+		}
+		
+		PrintStream fileMetrics = null;
+		Thread metricsThread = null;
+		if (Metrics.ENABLED)
+		{
+			fileMetrics = new PrintStream("output_" + fileLabel + "_metrics.txt", "UTF-8");
+			metricsThread = Metrics.startDumping(fileMetrics, METRICS_DUMP_PERIOD);
+		}
+		
+		PrintStream fileTrace = null;
+		if (Trace.ENABLED)
+		{
+			fileTrace = new PrintStream("output_" + fileLabel + "_trace.txt", "UTF-8");
+			Trace.setListener(new TraceRecorder(fileTrace));
+		}
 		
 		final PrintStream[] streams = {System.out, fileSummary};
 		
@@ -97,13 +247,15 @@ public class SupplyChainDriver
 				new AlgorithmEpsilonFirst(budget, 0.25),
 				new AlgorithmKDE(budget, 0.25),
 				new AlgorithmGreedy(),
-				new AlgorithmUCB_BV1()
+				new AlgorithmUCB_BV1(),
+				new AlgorithmVertical(1.96),
+				new AlgorithmThompson(),
+				new AlgorithmSH(),
+				new AlgorithmDiscountedUCB(0.99),
+				new AlgorithmSlidingWindowUCB(100)
 				//new AlgorithmConfidenceBiasedGreedy(20) // was 5
 		};
 		
-		final String[] dynamicAlgorithmNames = {"soaav", "l-split", "(random)", "(arbitrary)",
-				"PEEF (.25)", "E-First (.25)", "KDE (.25)", "greedy", "UCB-BV1"};
-		
 		
 		// static algorithms currently unused
 		
@@ -113,8 +265,6 @@ public class SupplyChainDriver
 				new AlgorithmKDE(budget, 0.25)
 		};
 		
-		final String[] staticAlgorithmNames = {"PEEF (.25)", "E-First (.25)", "KDE (.25)"};
-		
 		
 		//FIXME: tree setup
 		//		RandomProvider.rand.setSeed("deja vu".hashCode()); // static seed for testing		
@@ -131,10 +281,32 @@ public class SupplyChainDriver
 		AgentSupplier root = (AgentSupplier) constructTreeTerraced(TREE_DEPTH, ROOT_CHILDREN, 0.0,
 				dynamicAlgorithms[0], true, distribution, scale, scale);
 		
+		if (REPORT_REGRET)
+		{
+			// every agent rolls its regret into the tally as it goes
+			root.setRegretTally(regretTally);
+		}
+		root.setSketchArms(REPORT_ARM_PERCENTILE);
+		
 		// show level 2 of the tree
 //		Util.printIterable(root.getChildren());
 //		System.out.println();
 		
+		// the independent variable
+		final double budgetStart = 50;
+		final double budgetEnd = 521;
+		final double budgetStep = 22;
+		
+		ProgressReporter progress = null;
+		if (PROGRESS_PERIOD > 0)
+		{
+			final int budgetSteps = (int)((budgetEnd - budgetStart) / budgetStep) + 1;
+			progress = new ProgressReporter((long)budgetSteps * dynamicAlgorithms.length * trials,
+					System.err, PROGRESS_PERIOD);
+			root.setProgressReporter(progress);
+			progress.start();
+		}
+		
 		// begin big for loop that runs the 1000 trials each time
 		boolean firstLoop = true;
 		//FIXME: independant variable
@@ -142,7 +314,7 @@ public class SupplyChainDriver
 //		{
 //			fileDynamic.print(scale);
 //			fileStatic.print(scale);
-		for (budget = 50; budget <= 521; budget += 22)
+		for (budget = budgetStart; budget <= budgetEnd; budget += budgetStep)
 		{
 			fileDynamic.print(budget);
 			fileStatic.print(budget);
@@ -176,7 +348,14 @@ public class SupplyChainDriver
 						scale);
 				stream.printf("    The root node has an initial budget of %.1f.\n", 
 						budget);
-				stream.printf("    All arms cost %.1f to pull.\n\n", COST);
+				if (COST_SPREAD == 0)
+				{
+					stream.printf("    All arms cost %.1f to pull.\n\n", COST);
+				}
+				else
+				{
+					stream.printf("    Arms cost %.1f +/- %.0f%% to pull.\n\n", COST, COST_SPREAD * 100);
+				}
 			}
 			
 			// print algorithm names in summary
@@ -184,11 +363,11 @@ public class SupplyChainDriver
 			{
 				if (i < dynamicAlgorithms.length)
 				{
-					fileSummary.printf("Algorithm %2d: %15s\n", i + 1, dynamicAlgorithmNames[i]);
+					fileSummary.printf("Algorithm %2d: %15s\n", i + 1, dynamicAlgorithms[i].getName());
 				}
 				else
 				{
-					fileSummary.printf("Algorithm %2d: %15s\n", i + 1, staticAlgorithmNames[i - dynamicAlgorithms.length]);
+					fileSummary.printf("Algorithm %2d: %15s\n", i + 1, staticAlgorithms[i - dynamicAlgorithms.length].getName());
 				}
 			}
 			
@@ -198,9 +377,21 @@ public class SupplyChainDriver
 			fallbackOverride = false;
 			for (int algorithmNumber = 0; algorithmNumber < dynamicAlgorithms.length; algorithmNumber++)
 			{
-				System.out.printf("Algorithm %2d: %-15s", algorithmNumber + 1, dynamicAlgorithmNames[algorithmNumber]);
+				System.out.printf("Algorithm %2d: %-15s", algorithmNumber + 1, dynamicAlgorithms[algorithmNumber].getName());
+				
+				if (progress != null)
+				{
+					progress.setLabel("budget " + budget + ", " + dynamicAlgorithms[algorithmNumber].getName());
+				}
+				
+				if (REPORT_REGRET)
+				{
+					// the other trials roll into the tally too, so only these are kept
+					regretTally.clear();
+				}
 				
 				double timeTaken = 0;
+				double armPercentile = 0;
 				
 				for (int trial = 0; trial < trials; trial++)
 				{
@@ -211,8 +402,8 @@ public class SupplyChainDriver
 					}
 					else // implies running trial
 					{
-						// no need to change algorithms
-						resetTree(root, null, distribution, scale);
+						// no need to change algorithms, every agent resets on its first explore
+						root.beginTrial();
 					}
 					
 					assert root.algorithm.getClass().equals(dynamicAlgorithms[algorithmNumber].getClass()):
@@ -221,15 +412,51 @@ public class SupplyChainDriver
 								root.algorithm.getClass().getName(),
 								trial);
 					
+					if (Trace.ENABLED)
+					{
+						Trace.trialStarted(trial);
+					}
+					
 					// run the trial
 					root.explore(budget);
 					
+					if (Trace.ENABLED)
+					{
+						Trace.trialEnded(trial, root.getTotalTimeTaken());
+					}
+					
+					if (Metrics.ENABLED)
+					{
+						Metrics.TRIALS.increment();
+					}
+					
+					if (progress != null)
+					{
+						progress.trialCompleted();
+					}
+					
 					// keep running sum of average time
 					timeTaken += root.getTotalTimeTaken();
+					
+					if (REPORT_ARM_PERCENTILE)
+					{
+						armPercentile += root.getAgentMemory().getBest().getQuantile(AGGREGATION_PERCENTILE);
+					}
 				}
 				
 				fileDynamic.print("\t" + (timeTaken / trials));
 				System.out.printf("    Average time taken: %.2f\n", timeTaken / trials);
+				
+				if (REPORT_ARM_PERCENTILE)
+				{
+					System.out.printf("    Average %.0fth percentile of the top-ranked arm: %.2f\n",
+							AGGREGATION_PERCENTILE * 100, armPercentile / trials);
+				}
+				
+				if (REPORT_REGRET)
+				{
+					regretTally.print(fileRegret, budget + "\t" + dynamicAlgorithms[algorithmNumber].getName());
+				}
 			} // end homogeneous trial
 			
 			System.out.println();
@@ -241,7 +468,7 @@ public class SupplyChainDriver
 			fallbackOverride = true;
 			for (int algorithmNumber = 0; algorithmNumber < dynamicAlgorithms.length; algorithmNumber++)
 			{
-				System.out.printf("Algorithm %2d: %-15s", algorithmNumber + 1, dynamicAlgorithmNames[algorithmNumber]);
+				System.out.printf("Algorithm %2d: %-15s", algorithmNumber + 1, dynamicAlgorithms[algorithmNumber].getName());
 				
 				double timeTaken = 0;
 				
@@ -254,8 +481,8 @@ public class SupplyChainDriver
 					}
 					else // implies running trial
 					{
-						// no need to change algorithms
-						resetTree(root, null, distribution, scale);
+						// no need to change algorithms, every agent resets on its first explore
+						root.beginTrial();
 					}
 					
 					// run the trial
@@ -277,7 +504,7 @@ public class SupplyChainDriver
 			for (int algorithmNumber = 0; algorithmNumber < staticAlgorithms.length; algorithmNumber++)
 			{
 				System.out.printf("Algorithm %2d: %-15s",
-						algorithmNumber + dynamicAlgorithms.length + 1, staticAlgorithmNames[algorithmNumber]);
+						algorithmNumber + dynamicAlgorithms.length + 1, staticAlgorithms[algorithmNumber].getName());
 				
 				double timeTaken = 0;
 				
@@ -290,8 +517,8 @@ public class SupplyChainDriver
 					}
 					else // implies running trial
 					{
-						// no need to change algorithms
-						resetTree(root, null, distribution, scale);
+						// no need to change algorithms, every agent resets on its first explore
+						root.beginTrial();
 					}
 					
 					// run the trial
@@ -317,8 +544,190 @@ public class SupplyChainDriver
 		} // end giant for loop
 		
 		
+		if (progress != null)
+		{
+			progress.stop();
+		}
+		
 		fileDynamic.close();
 		fileStatic.close();
+		if (REPORT_REGRET)
+		{
+			fileRegret.close();
+		}
+		if (Metrics.ENABLED)
+		{
+			// stop the periodic dumps first, so none of them writes to the file after it is closed
+			metricsThread.interrupt();
+			try
+			{
+				metricsThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			
+			Metrics.dump(fileMetrics);
+			fileMetrics.close();
+		}
+		if (Trace.ENABLED)
+		{
+			Trace.setListener(null);
+			fileTrace.close();
+		}
+	}
+	
+	/**
+	 * Run every combination of the parameters below in parallel, writing one line per
+	 * combination to the <code>_sweep</code> output file as soon as it is done
+	 * @param fileLabel the label of the output file
+	 */
+	private static void runSweep(String fileLabel) throws FileNotFoundException, UnsupportedEncodingException
+	{
+		//FIXME: sweep parameters
+		final int trials = 1000;
+		
+		final double[] budgets = new double[22];
+		for (int i = 0; i < budgets.length; i++)
+		{
+			budgets[i] = 50 + 22 * i;
+		}
+		
+		final double[] scales = {20};
+		
+		final ParameterSweep.DistributionFactory[] distributions = {
+				new ParameterSweep.DistributionFactory()
+				{
+					@Override
+					public RealDistribution create()
+					{
+						return new NormalDistribution();
+					}
+					
+					@Override
+					public String getName()
+					{
+						return "normal";
+					}
+				},
+//				new ParameterSweep.DistributionFactory()
+//				{
+//					@Override
+//					public RealDistribution create()
+//					{
+//						return new UniformRealDistribution();
+//					}
+//					
+//					@Override
+//					public String getName()
+//					{
+//						return "square";
+//					}
+//				},
+		};
+		
+		final TreeShape[] shapes = {TreeShape.TERRACED};
+		
+		final ParameterSweep.AlgorithmFactory[] algorithms = {
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmSOAAV(0);
+					}
+				},
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmLSplit(2);
+					}
+				},
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmPEEF(ROOT_CHILDREN, budget, 0.25);
+					}
+				},
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmEpsilonFirst(budget, 0.25);
+					}
+				},
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmKDE(budget, 0.25);
+					}
+				},
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmVertical(1.96);
+					}
+				},
+				new ParameterSweep.AlgorithmFactory()
+				{
+					@Override
+					public Algorithm create(double budget)
+					{
+						return new AlgorithmThompson();
+					}
+				},
+		};
+		
+		final ParameterSweep sweep = new ParameterSweep(budgets, scales, distributions, shapes, algorithms, trials);
+		System.out.printf("Sweeping %d cells of %d trials on %d threads\n", sweep.getCellCount(), trials, SWEEP_THREADS);
+		
+		ProgressReporter progress = null;
+		if (PROGRESS_PERIOD > 0)
+		{
+			progress = new ProgressReporter(sweep.getTotalTrials(), System.err, PROGRESS_PERIOD);
+			progress.start();
+		}
+		
+		final PrintStream fileSweep = new PrintStream("output_" + fileLabel + "_sweep.txt", "UTF-8");
+		sweep.run(fileSweep, SWEEP_THREADS, progress);
+		fileSweep.close();
+		
+		if (progress != null)
+		{
+			progress.stop();
+		}
+	}
+	
+	/**
+	 * Construct a tree of the given shape, with {@link #TREE_DEPTH} levels and
+	 * {@link #ROOT_CHILDREN} children at the root
+	 * @param shape the shape of the tree
+	 * @param algorithm The algorithm to use in this tree
+	 * @param distribution Distribution to pull samples from
+	 * @param scale The standard deviation all arms in this tree are to have
+	 * @return The root node of the new tree
+	 */
+	public static Supplier constructTree(TreeShape shape, Algorithm algorithm, RealDistribution distribution, double scale)
+	{
+		switch (shape)
+		{
+			case LINEAR:
+				return constructTree(TREE_DEPTH, ROOT_CHILDREN, 0, algorithm, true, distribution, scale);
+			case SUPERLINEAR:
+				return constructTreeSuper(TREE_DEPTH, ROOT_CHILDREN, 0.0, algorithm, true, distribution, scale);
+			default:
+				return constructTreeTerraced(TREE_DEPTH, ROOT_CHILDREN, 0.0, algorithm, true, distribution, scale, scale);
+		}
 	}
 	
 	/**
@@ -337,7 +746,7 @@ public class SupplyChainDriver
 	{
 		if (treeSize == 1) // base case, leaf node
 		{
-			return new SimpleSupplier(COST, MEAN_TIME_MINIMUM
+			return newLeaf(MEAN_TIME_MINIMUM
 					+ meanIncrementMultiplier * MEAN_TIME_INCREMENT, distribution, scale);
 		}
 		else
@@ -347,8 +756,8 @@ public class SupplyChainDriver
 			for (int i = 0; i < numChildren; i++)
 			{
 				Supplier child = constructTree(treeSize - 1, NONROOT_CHILDREN, i,
-						//(algorithm.requiresInitialBudget() || fallbackOverride) ?
-						(fallbackOverride) ?
+						// sequential halving plans from the whole budget, which only the root is given
+						(algorithm instanceof AlgorithmSH || fallbackOverride) ?
 						fallbackAlgorithm : algorithm, false, distribution, scale);
 				
 				if (i == 0) child.setBestArm(true);
@@ -368,7 +777,7 @@ public class SupplyChainDriver
 			 * Note that the budgetMultiplier does not affect the root node as it is taken into
 			 * account in the supply() method, which is never called on the root node.
 			 */
-			return new AgentSupplier(algorithm.duplicate(), childrenScrambled, COST, MEAN_TIME_MINIMUM
+			return new AgentSupplier(algorithm.duplicate(), childrenScrambled, drawCost(), MEAN_TIME_MINIMUM
 					+ meanIncrementMultiplier * MEAN_TIME_INCREMENT, distribution, scale, numChildren, isRoot);
 		}
 	}
@@ -390,7 +799,7 @@ public class SupplyChainDriver
 	{
 		if (treeSize == 1) // base case, leaf node
 		{
-			return new SimpleSupplier(COST, meanTime, distribution, scale);
+			return newLeaf(meanTime, distribution, scale);
 		}
 		else
 		{
@@ -404,8 +813,8 @@ public class SupplyChainDriver
 						MEAN_TIME_MINIMUM + (numChildren - 1) * MEAN_TIME_INCREMENT 
 						* Math.pow((double)i / (numChildren - 1), SUPER_FACTOR),
 						
-						//(algorithm.requiresInitialBudget() || fallbackOverride) ?
-						(fallbackOverride) ?
+						// sequential halving plans from the whole budget, which only the root is given
+						(algorithm instanceof AlgorithmSH || fallbackOverride) ?
 						fallbackAlgorithm : algorithm, false, distribution, scale);
 				
 				if (i == 0) child.setBestArm(true);
@@ -425,10 +834,10 @@ public class SupplyChainDriver
 			 * Note that the budgetMultiplier does not affect the root node as it is taken into
 			 * account in the supply() method, which is never called on the root node.
 			 */
-			return new AgentSupplier(algorithm.duplicate(), childrenScrambled, COST, meanTime, distribution, scale, numChildren, isRoot);
+			return new AgentSupplier(algorithm.duplicate(), childrenScrambled, drawCost(), meanTime, distribution, scale, numChildren, isRoot);
 		}
 	}
-
+	
 	/**
 	 * Recursively construct a tree
 	 * @param treeSize height of tree to generate, including the root node
@@ -446,7 +855,7 @@ public class SupplyChainDriver
 	{
 		if (treeSize == 1) // base case, leaf node
 		{
-			return new SimpleSupplier(COST, meanTime, distribution, scale);
+			return newLeaf(meanTime, distribution, scale);
 		}
 		else
 		{
@@ -473,8 +882,8 @@ public class SupplyChainDriver
 				}
 				
 				Supplier child = constructTreeTerraced(treeSize - 1, NONROOT_CHILDREN, newMeanTime,
-						//(algorithm.requiresInitialBudget() || fallbackOverride) ?
-						(fallbackOverride) ?
+						// sequential halving plans from the whole budget, which only the root is given
+						(algorithm instanceof AlgorithmSH || fallbackOverride) ?
 						fallbackAlgorithm : algorithm, false, distribution, baseScale, newStandardDeviation);
 				
 				if (i == 0) child.setBestArm(true);
@@ -494,10 +903,38 @@ public class SupplyChainDriver
 			 * Note that the budgetMultiplier does not affect the root node as it is taken into
 			 * account in the supply() method, which is never called on the root node.
 			 */
-			return new AgentSupplier(algorithm.duplicate(), childrenScrambled, COST, meanTime, distribution, scale, numChildren, isRoot);
+			return new AgentSupplier(algorithm.duplicate(), childrenScrambled, drawCost(), meanTime, distribution, scale, numChildren, isRoot);
 		}
 	}
-
+	
+	/**
+	 * Create a new leaf supplier, drifting as set by {@link #DRIFT}
+	 * @param meanTime Average time the supplier takes to provide services
+	 * @param distribution The distribution to use for the supplier's samples
+	 * @param scale The standard deviation of the supplier's samples
+	 * @return the new leaf supplier
+	 */
+	private static SimpleSupplier newLeaf(double meanTime, RealDistribution distribution, double scale)
+	{
+		SimpleSupplier leaf = new SimpleSupplier(drawCost(), meanTime, distribution, scale);
+		leaf.setDrift(Drift.random(DRIFT, DRIFT_MAGNITUDE, DRIFT_PERIOD, RandomProvider.rand));
+		return leaf;
+	}
+	
+	/**
+	 * Draw the cost of a new supplier
+	 * @return {@link #COST}, spread out by up to {@link #COST_SPREAD}
+	 */
+	private static double drawCost()
+	{
+		if (COST_SPREAD == 0)
+		{
+			return COST;
+		}
+		
+		return COST * (1 + COST_SPREAD * (2 * RandomProvider.rand.nextDouble() - 1));
+	}
+	
 	/**
 	 * Reset all of the agents in this tree so that it can be used in another run
 	 * @param root the root node of this tree
@@ -524,9 +961,9 @@ public class SupplyChainDriver
 			for (Supplier child: root.getChildren())
 			{
 				resetTree(child,
+						// sequential halving plans from the whole budget, which only the root is given
 						(newAlgorithm != null && 
-						//(newAlgorithm.requiresInitialBudget() || fallbackOverride)) ?
-						(fallbackOverride)) ?
+						(newAlgorithm instanceof AlgorithmSH || fallbackOverride)) ?
 						fallbackAlgorithm : newAlgorithm, distribution, scale); // reset them as well
 			}
 		}
@@ -0,0 +1,280 @@
+package com.zkxs.supplychain;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.distribution.RealDistribution;
+
+/**
+ * Runs purchases from child agents concurrently within a single trial. Each child's subtree
+ * only ever touches its own state, so purchases from different children can run on
+ * different threads as long as purchases from the same child stay in order.
+ */
+public class SupplyExecutor
+{
+	/**
+	 * Has any task been started? Until then every sample is drawn on the thread that owns
+	 * the distribution, and looking up the generator of the current task can be skipped.
+	 */
+	private static volatile boolean tasksStarted = false;
+	
+	/** The generator of the task running on each thread, or <code>null</code> outside of tasks */
+	private static final ThreadLocal<Random> taskRandom = new ThreadLocal<Random>();
+	
+	/**
+	 * Cannot be instantiated, static access only
+	 */
+	private SupplyExecutor(){}
+	
+	/**
+	 * Lazily creates the pool the first time it is needed
+	 */
+	private static class PoolHolder
+	{
+		static final ForkJoinPool pool = new ForkJoinPool();
+	}
+	
+	/**
+	 * Draw a sample from a distribution. The distributions' own random number generators
+	 * are not thread safe, so inside a task the sample is drawn by inverting the cumulative
+	 * distribution with the task's own generator instead. Every task is seeded by whoever
+	 * started it, so a run is still reproducible from its seeds.
+	 * @param distribution the distribution to sample
+	 * @return a sample
+	 */
+	public static double sample(RealDistribution distribution)
+	{
+		if (Metrics.ENABLED)
+		{
+			Metrics.SAMPLES.increment();
+		}
+		
+		if (tasksStarted)
+		{
+			final Random random = taskRandom.get();
+			if (random != null)
+			{
+				double p;
+				do
+				{
+					p = random.nextDouble();
+				} while (p == 0); // the inverse of 0 is usually -infinity
+				
+				return distribution.inverseCumulativeProbability(p);
+			}
+		}
+		
+		return distribution.sample();
+	}
+	
+	/**
+	 * Draw the seed of a task about to be started, from the generator of the current task,
+	 * or from {@link RandomProvider#rand} outside of tasks
+	 * @return a seed
+	 */
+	private static long nextSeed()
+	{
+		final Random random = taskRandom.get();
+		return (random == null ? RandomProvider.rand : random).nextLong();
+	}
+	
+	/**
+	 * Make a task's generator the one samples on this thread are drawn with
+	 * @param random the generator of the task about to run
+	 * @return the generator it replaces, to be handed to {@link #exitTask(Random)}
+	 */
+	private static Random enterTask(Random random)
+	{
+		final Random outer = taskRandom.get();
+		taskRandom.set(random);
+		return outer;
+	}
+	
+	/**
+	 * Restore the generator samples on this thread were drawn with before a task ran. A
+	 * thread waiting on one task may run another, so generators nest.
+	 * @param outer the generator returned by {@link #enterTask(Random)}
+	 */
+	private static void exitTask(Random outer)
+	{
+		taskRandom.set(outer);
+	}
+	
+	/**
+	 * Run every task and wait for all of them to finish. Tasks are run in the shared pool,
+	 * or in the current pool if this is called from within a task.
+	 * @param tasks the tasks to run
+	 */
+	static void invokeAll(final ArrayList<SupplyTask> tasks)
+	{
+		tasksStarted = true;
+		if (ForkJoinTask.inForkJoinPool())
+		{
+			ForkJoinTask.invokeAll(tasks);
+		}
+		else
+		{
+			PoolHolder.pool.invoke(new RecursiveAction()
+			{
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected void compute()
+				{
+					ForkJoinTask.invokeAll(tasks);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Makes one or more purchases from a single child agent, in order, storing the time
+	 * each took at its position in a shared array. Each agent keeps one of these per child
+	 * and restarts it for every batch.
+	 */
+	static class SupplyTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		/** The child agent to buy from */
+		private final AgentSupplier child;
+		
+		/** The positions in {@link #times} of this child's purchases, in order */
+		private final int[] positions;
+		
+		/** The number of valid entries in {@link #positions} */
+		private int count;
+		
+		/** Where to store the time each purchase took */
+		private final double[] times;
+		
+		/** The generator the purchases draw their samples with */
+		private final Random random;
+		
+		/**
+		 * Construct a new task
+		 * @param child The child agent to buy from
+		 * @param maxPurchases The maximum number of purchases this task will make
+		 * @param times Where to store the time each purchase took
+		 */
+		SupplyTask(AgentSupplier child, int maxPurchases, double[] times)
+		{
+			this.child = child;
+			this.positions = new int[maxPurchases];
+			this.count = 0;
+			this.times = times;
+			this.random = new Random();
+		}
+		
+		/**
+		 * Clear this task's purchases and reseed it, ready for a new batch
+		 */
+		void restart()
+		{
+			reinitialize();
+			count = 0;
+			random.setSeed(nextSeed());
+		}
+		
+		/**
+		 * Add a purchase to the end of this task
+		 * @param position the position in the shared array to store the time at
+		 */
+		void add(int position)
+		{
+			positions[count++] = position;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			final Random outer = enterTask(random);
+			try
+			{
+				for (int i = 0; i < count; i++)
+				{
+					times[positions[i]] = child.supply();
+				}
+			}
+			finally
+			{
+				exitTask(outer);
+			}
+		}
+	}
+	
+	/**
+	 * An agent's channel for asynchronous purchases. The buying agent starts a purchase,
+	 * which spends the agent's budget on a pool thread, and later joins it to receive the
+	 * time the purchase took. Each agent owns one of these, which is reused for every
+	 * purchase since purchases from the same agent never overlap.
+	 */
+	static class PurchaseTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		/** The agent to buy from */
+		private final AgentSupplier agent;
+		
+		/** The time the last purchase took */
+		private double time;
+		
+		/** The generator the purchase draws its samples with */
+		private final Random random;
+		
+		/**
+		 * Construct a new purchase channel
+		 * @param agent the agent to buy from
+		 */
+		PurchaseTask(AgentSupplier agent)
+		{
+			this.agent = agent;
+			this.random = new Random();
+		}
+		
+		/**
+		 * Start a purchase without waiting for it to finish
+		 */
+		void start()
+		{
+			tasksStarted = true;
+			reinitialize();
+			random.setSeed(nextSeed());
+			if (inForkJoinPool())
+			{
+				fork();
+			}
+			else
+			{
+				PoolHolder.pool.execute(this);
+			}
+		}
+		
+		/**
+		 * Wait for the purchase to finish
+		 * @return The amount of time required to complete the order
+		 */
+		double finish()
+		{
+			join();
+			return time;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			final Random outer = enterTask(random);
+			try
+			{
+				time = agent.supply();
+			}
+			finally
+			{
+				exitTask(outer);
+			}
+		}
+	}
+	
+}
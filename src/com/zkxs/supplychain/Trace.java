@@ -0,0 +1,75 @@
+package com.zkxs.supplychain;
+
+/**
+ * Hooks for following the simulation from outside, such as from a profiler. Events are only
+ * sent when the <code>supplychain.trace</code> system property is <code>true</code> at
+ * startup. {@link #ENABLED} is a constant, so when it is <code>false</code> every
+ * <code>if (Trace.ENABLED)</code> block is compiled away and tracing costs nothing.
+ */
+public class Trace
+{
+	/** <code>true</code> if events are being sent */
+	public static final boolean ENABLED = Boolean.getBoolean("supplychain.trace");
+	
+	/** The listener events are sent to, or <code>null</code> to drop them */
+	private static volatile TraceListener listener;
+	
+	/**
+	 * Cannot be instantiated, static access only
+	 */
+	private Trace(){}
+	
+	/**
+	 * Set the listener events are sent to. Only has an effect if {@link #ENABLED}.
+	 * @param listener the listener, or <code>null</code> to drop events
+	 */
+	public static void setListener(TraceListener listener)
+	{
+		Trace.listener = listener;
+	}
+	
+	/**
+	 * @see TraceListener#trialStarted(int)
+	 */
+	public static void trialStarted(int trial)
+	{
+		final TraceListener listener = Trace.listener;
+		if (listener != null) listener.trialStarted(trial);
+	}
+	
+	/**
+	 * @see TraceListener#trialEnded(int, double)
+	 */
+	public static void trialEnded(int trial, double timeTaken)
+	{
+		final TraceListener listener = Trace.listener;
+		if (listener != null) listener.trialEnded(trial, timeTaken);
+	}
+	
+	/**
+	 * @see TraceListener#exploreStarted(AgentSupplier, double)
+	 */
+	public static void exploreStarted(AgentSupplier agent, double budget)
+	{
+		final TraceListener listener = Trace.listener;
+		if (listener != null) listener.exploreStarted(agent, budget);
+	}
+	
+	/**
+	 * @see TraceListener#exploreEnded(AgentSupplier, double)
+	 */
+	public static void exploreEnded(AgentSupplier agent, double timeTaken)
+	{
+		final TraceListener listener = Trace.listener;
+		if (listener != null) listener.exploreEnded(agent, timeTaken);
+	}
+	
+	/**
+	 * @see TraceListener#phaseChanged(AgentSupplier, Algorithm, String)
+	 */
+	public static void phaseChanged(AgentSupplier agent, Algorithm algorithm, String phase)
+	{
+		final TraceListener listener = Trace.listener;
+		if (listener != null) listener.phaseChanged(agent, algorithm, phase);
+	}
+}
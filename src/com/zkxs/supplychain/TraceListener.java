@@ -0,0 +1,44 @@
+package com.zkxs.supplychain;
+
+/**
+ * Receives the events of a traced run, see {@link Trace}. Events from different agents may
+ * arrive on different threads when purchases run concurrently.
+ */
+public interface TraceListener
+{
+	/**
+	 * A trial is about to begin
+	 * @param trial the number of the trial within its run, counting from 0
+	 */
+	public void trialStarted(int trial);
+	
+	/**
+	 * A trial has ended
+	 * @param trial the number of the trial within its run, counting from 0
+	 * @param timeTaken the time the root agent reported for the trial
+	 */
+	public void trialEnded(int trial, double timeTaken);
+	
+	/**
+	 * An agent has begun spending a budget
+	 * @param agent the agent, whose {@link AgentSupplier#getDepth()} gives its level
+	 * @param budget the budget added by this explore
+	 */
+	public void exploreStarted(AgentSupplier agent, double budget);
+	
+	/**
+	 * An agent has spent its budget
+	 * @param agent the agent
+	 * @param timeTaken the time the agent reports for the explore
+	 */
+	public void exploreEnded(AgentSupplier agent, double timeTaken);
+	
+	/**
+	 * An agent's algorithm has moved to a new phase, such as a new pass over the arms or
+	 * committing to the best arm
+	 * @param agent the agent
+	 * @param algorithm the agent's algorithm
+	 * @param phase a short description of the new phase
+	 */
+	public void phaseChanged(AgentSupplier agent, Algorithm algorithm, String phase);
+}
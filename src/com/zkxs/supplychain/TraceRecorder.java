@@ -0,0 +1,62 @@
+package com.zkxs.supplychain;
+import java.io.PrintStream;
+
+/**
+ * A {@link TraceListener} that writes every event as a tab-separated line: the time in
+ * nanoseconds, the thread, the event, and the details of the event. Agents are identified
+ * by their depth and id.
+ */
+public class TraceRecorder implements TraceListener
+{
+	/** The stream events are written to */
+	private final PrintStream stream;
+	
+	/**
+	 * Construct a new recorder
+	 * @param stream the stream to write events to
+	 */
+	public TraceRecorder(PrintStream stream)
+	{
+		this.stream = stream;
+		stream.println("nanos\tthread\tevent\tlevel\tagent\tdetail");
+	}
+	
+	@Override
+	public void trialStarted(int trial)
+	{
+		write("trial start\t\t\t" + trial);
+	}
+	
+	@Override
+	public void trialEnded(int trial, double timeTaken)
+	{
+		write("trial end\t\t\t" + trial + " " + timeTaken);
+	}
+	
+	@Override
+	public void exploreStarted(AgentSupplier agent, double budget)
+	{
+		write("explore start\t" + agent.getDepth() + "\t" + agent.id + "\t" + budget);
+	}
+	
+	@Override
+	public void exploreEnded(AgentSupplier agent, double timeTaken)
+	{
+		write("explore end\t" + agent.getDepth() + "\t" + agent.id + "\t" + timeTaken);
+	}
+	
+	@Override
+	public void phaseChanged(AgentSupplier agent, Algorithm algorithm, String phase)
+	{
+		write("phase\t" + agent.getDepth() + "\t" + agent.id + "\t" + algorithm.getName() + ": " + phase);
+	}
+	
+	/**
+	 * Write one event, stamped with the time and thread
+	 * @param event the event and its details, tab-separated
+	 */
+	private synchronized void write(String event)
+	{
+		stream.println(System.nanoTime() + "\t" + Thread.currentThread().getName() + "\t" + event);
+	}
+}
@@ -0,0 +1,19 @@
+package com.zkxs.supplychain;
+/**
+ * The shapes of supplier tree {@link SupplyChainDriver#constructTree(TreeShape, Algorithm, org.apache.commons.math3.distribution.RealDistribution, double)}
+ * can build. They differ in how the mean times of the children of each agent are spread out.
+ */
+public enum TreeShape
+{
+	/** Mean times are evenly spaced */
+	LINEAR,
+	
+	/** Mean times are spaced by a power of their rank, the driver's super factor */
+	SUPERLINEAR,
+	
+	/**
+	 * One deterministic best child, then a terrace of good children and a terrace of bad
+	 * children
+	 */
+	TERRACED
+}
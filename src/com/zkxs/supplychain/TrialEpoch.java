@@ -0,0 +1,60 @@
+package com.zkxs.supplychain;
+/**
+ * A trial counter shared by every agent in a supply tree. Advancing the epoch marks the
+ * state of every agent in the tree as stale, and each agent resets itself when it first
+ * explores during the new trial. Starting a new trial is then O(1) instead of a walk over
+ * the entire tree, and agents the trial never reaches are never reset at all. Each agent's
+ * memory keeps a counter of its own for its arms, which reset themselves when next used.
+ */
+public class TrialEpoch
+{
+	/** The current epoch */
+	private int epoch;
+	
+	/** The seed of the current trial, see {@link #advance(long)} */
+	private long seed;
+	
+	/**
+	 * Construct a new epoch counter, starting at epoch 0
+	 */
+	public TrialEpoch()
+	{
+		epoch = 0;
+	}
+	
+	/**
+	 * Get the current epoch
+	 * @return the current epoch
+	 */
+	public int get()
+	{
+		return epoch;
+	}
+	
+	/**
+	 * Begin a new epoch, invalidating all state tagged with an older epoch
+	 */
+	public void advance()
+	{
+		epoch++;
+	}
+	
+	/**
+	 * Begin a new epoch for a new trial with its own seed
+	 * @param seed the seed of the new trial
+	 */
+	public void advance(long seed)
+	{
+		advance();
+		this.seed = seed;
+	}
+	
+	/**
+	 * Get the seed of the current trial
+	 * @return the seed given to the last {@link #advance(long)}, or 0 if there was none
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+}
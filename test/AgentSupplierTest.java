@@ -0,0 +1,286 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.AgentSupplier;
+import com.zkxs.supplychain.Algorithm;
+import com.zkxs.supplychain.AlgorithmGreedy;
+import com.zkxs.supplychain.AlgorithmSH;
+import com.zkxs.supplychain.AlgorithmThompson;
+import com.zkxs.supplychain.AlgorithmUCB_BV1;
+import com.zkxs.supplychain.AlgorithmVertical;
+import com.zkxs.supplychain.ArmMemory;
+import com.zkxs.supplychain.Budget;
+import com.zkxs.supplychain.RandomProvider;
+import com.zkxs.supplychain.RegretTally;
+import com.zkxs.supplychain.SimpleSupplier;
+import com.zkxs.supplychain.Supplier;
+
+
+public class AgentSupplierTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	/**
+	 * Build a root agent over 3 agents of 4 leaves each. Everything costs 1, each child agent
+	 * makes 4 pulls per purchase, and the first child of every agent is the best.
+	 */
+	private static AgentSupplier tree(Algorithm algorithm, double scale)
+	{
+		ArrayList<Supplier> agents = new ArrayList<Supplier>();
+		for (int i = 0; i < 3; i++)
+		{
+			ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+			for (int j = 0; j < 4; j++)
+			{
+				SimpleSupplier leaf = new SimpleSupplier(1, 10 + 10 * j, new NormalDistribution(), scale);
+				leaf.setBestArm(j == 0);
+				leaves.add(leaf);
+			}
+			
+			AgentSupplier agent = new AgentSupplier(algorithm.duplicate(), leaves, 1, 10 + 10 * i,
+					new NormalDistribution(), scale, 4, false);
+			agent.setBestArm(i == 0);
+			agents.add(agent);
+		}
+		
+		return new AgentSupplier(algorithm.duplicate(), agents, 1, 0, new NormalDistribution(), scale, 3, true);
+	}
+	
+	private static void assertAsyncExplore(Algorithm algorithm)
+	{
+		AgentSupplier root = tree(algorithm, 2);
+		root.setPurchaseWindow(4);
+		
+		for (int trial = 0; trial < 5; trial++)
+		{
+			root.beginTrial();
+			double time = root.explore(60);
+			
+			assertFalse(Double.isNaN(time));
+			assertTrue(time > 0);
+			assertEquals(60, root.getTotalPulls());
+			
+			// every purchase from a child agent spends its whole budget
+			int purchases = 0;
+			int bestPurchases = 0;
+			for (Supplier child : root.getChildren())
+			{
+				AgentSupplier agent = (AgentSupplier)child;
+				assertEquals(0, agent.getTotalPulls() % 4);
+				purchases += agent.getTotalPulls() / 4;
+				
+				if (agent.isBestArm())
+				{
+					bestPurchases = agent.getTotalPulls() / 4;
+				}
+			}
+			assertEquals(60, purchases);
+			assertTrue(bestPurchases > 30);
+		}
+	}
+	
+	@Test
+	public void testAsyncGreedy()
+	{
+		assertAsyncExplore(new AlgorithmGreedy());
+	}
+	
+	@Test
+	public void testAsyncThompson()
+	{
+		assertAsyncExplore(new AlgorithmThompson());
+	}
+	
+	/**
+	 * Thompson sampling draws from its agent's generator on pool threads, so two runs from the
+	 * same seed must still explore identically however the threads are scheduled
+	 */
+	@Test
+	public void testAsyncReproducible()
+	{
+		RandomProvider.rand.setSeed(42);
+		AgentSupplier root = tree(new AlgorithmThompson(), 2);
+		root.setPurchaseWindow(4);
+		RandomProvider.rand.setSeed(42);
+		AgentSupplier again = tree(new AlgorithmThompson(), 2);
+		again.setPurchaseWindow(4);
+		
+		for (int trial = 0; trial < 5; trial++)
+		{
+			RandomProvider.rand.setSeed(trial);
+			root.beginTrial();
+			final double time = root.explore(60);
+			
+			RandomProvider.rand.setSeed(trial);
+			again.beginTrial();
+			assertEquals(time, again.explore(60), 0);
+			
+			for (int i = 0; i < 3; i++)
+			{
+				assertEquals(((AgentSupplier)root.getChildren().get(i)).getTotalPulls(),
+						((AgentSupplier)again.getChildren().get(i)).getTotalPulls());
+			}
+		}
+	}
+	
+	/**
+	 * An agent sketching its arms turns the sketches back on every trial, after its memory
+	 * is reset
+	 */
+	@Test
+	public void testSketchArms()
+	{
+		ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+		for (int j = 0; j < 3; j++)
+		{
+			SimpleSupplier leaf = new SimpleSupplier(1, 10 + 10 * j, new NormalDistribution(), 0);
+			leaf.setBestArm(j == 0);
+			leaves.add(leaf);
+		}
+		AgentSupplier agent = new AgentSupplier(new AlgorithmGreedy(), leaves, 1, 0, new NormalDistribution(), 1, 1, true);
+		agent.setSketchArms(true);
+		
+		for (int trial = 0; trial < 3; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(30);
+			
+			for (ArmMemory arm : agent.getAgentMemory().getRankedListSnapshot())
+			{
+				assertTrue(arm.isSketchEnabled());
+			}
+			
+			// the leaves never vary, so every time of the best arm is its mean
+			assertEquals(10, agent.getAgentMemory().getBest().getQuantile(0.9), 0);
+		}
+	}
+	
+	/**
+	 * Check that an agent whose arms cost different amounts spends its budget exactly, down
+	 * to less than the cheapest arm
+	 */
+	private static void assertSpendsBudget(Algorithm algorithm)
+	{
+		final double[] costs = {0.3, 0.7, 1.1};
+		ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+		for (int j = 0; j < costs.length; j++)
+		{
+			SimpleSupplier leaf = new SimpleSupplier(costs[j], 10 + 10 * j, new NormalDistribution(), 2);
+			leaf.setBestArm(j == 0);
+			leaves.add(leaf);
+		}
+		AgentSupplier agent = new AgentSupplier(algorithm, leaves, 1, 0, new NormalDistribution(), 1, 1, true);
+		
+		for (int trial = 0; trial < 5; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(20.7);
+			
+			long spent = 0;
+			int pulls = 0;
+			for (ArmMemory arm : agent.getAgentMemory().getRankedListSnapshot())
+			{
+				spent += arm.getPulls() * arm.getSupplier().getCostUnits();
+				pulls += arm.getPulls();
+			}
+			
+			final long left = Budget.toUnits(20.7) - spent;
+			assertTrue(algorithm.getName() + " left " + left, left >= 0 && left < Budget.toUnits(0.3));
+			assertEquals(pulls, agent.getTotalPulls());
+		}
+	}
+	
+	@Test
+	public void testPerArmCosts()
+	{
+		assertSpendsBudget(new AlgorithmGreedy());
+		assertSpendsBudget(new AlgorithmUCB_BV1());
+		assertSpendsBudget(new AlgorithmVertical(1.96));
+		assertSpendsBudget(new AlgorithmThompson());
+		assertSpendsBudget(new AlgorithmSH());
+	}
+	
+	/**
+	 * The tally rolls up each explore as it ends, so after several trials it must hold the
+	 * same totals as the counters of every agent added up at the end of each trial
+	 */
+	@Test
+	public void testRegretTally()
+	{
+		AgentSupplier root = tree(new AlgorithmGreedy(), 8);
+		RegretTally tally = new RegretTally(2);
+		root.setRegretTally(tally);
+		
+		int[] agents = new int[2];
+		long[] pulls = new long[2];
+		long[] bestArmPulls = new long[2];
+		double[] regret = new double[2];
+		int[] identified = new int[2];
+		
+		for (int trial = 0; trial < 5; trial++)
+		{
+			root.beginTrial();
+			root.explore(60);
+			
+			ArrayList<AgentSupplier> trialAgents = new ArrayList<AgentSupplier>();
+			trialAgents.add(root);
+			for (Supplier child : root.getChildren())
+			{
+				trialAgents.add((AgentSupplier)child);
+			}
+			
+			for (AgentSupplier agent : trialAgents)
+			{
+				if (agent.getTotalPulls() == 0) continue; // never explored this trial
+				
+				final int level = agent.getDepth();
+				agents[level]++;
+				pulls[level] += agent.getTotalPulls();
+				bestArmPulls[level] += agent.getBestArmPulls();
+				regret[level] += agent.getRegret();
+				identified[level] += agent.getIdentifiedAt() > 0 ? 1 : 0;
+			}
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		tally.print(new PrintStream(bytes), "greedy");
+		String[] lines = bytes.toString().trim().split("\n");
+		assertEquals(2, lines.length);
+		
+		for (String line : lines)
+		{
+			String[] columns = line.split("\t");
+			final int level = Integer.parseInt(columns[1]);
+			assertEquals((double)bestArmPulls[level] / pulls[level], Double.parseDouble(columns[2]), 1e-4);
+			assertEquals(regret[level] / pulls[level], Double.parseDouble(columns[3]), 1e-4);
+			assertEquals(regret[level] / agents[level], Double.parseDouble(columns[4]), 1e-4);
+			assertEquals((double)identified[level] / agents[level], Double.parseDouble(columns[5]), 1e-4);
+		}
+	}
+	
+}
@@ -0,0 +1,313 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.AgentSupplier;
+import com.zkxs.supplychain.Algorithm;
+import com.zkxs.supplychain.AlgorithmDiscountedUCB;
+import com.zkxs.supplychain.AlgorithmSH;
+import com.zkxs.supplychain.AlgorithmSlidingWindowUCB;
+import com.zkxs.supplychain.AlgorithmThompson;
+import com.zkxs.supplychain.AlgorithmVertical;
+import com.zkxs.supplychain.ArmMemory;
+import com.zkxs.supplychain.Drift;
+import com.zkxs.supplychain.SimpleSupplier;
+import com.zkxs.supplychain.Supplier;
+
+
+public class AlgorithmTest
+{
+	/** The budget of the agent each trial */
+	private static final double BUDGET = 200;
+	
+	/** The number of trials to average over */
+	private static final int TRIALS = 20;
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	/**
+	 * Build a root agent over 5 leaves costing 1, with mean times 10 apart and a standard
+	 * deviation of 2. The first leaf is the clearly best arm.
+	 */
+	private static AgentSupplier agent(Algorithm algorithm)
+	{
+		return agent(algorithm, 10, 2);
+	}
+	
+	/**
+	 * Build a root agent over 5 leaves costing 1, with mean times starting at 10. The first
+	 * leaf is marked as the best arm.
+	 * @param spacing how far apart the mean times of the leaves are
+	 * @param scale the standard deviation of the times of the leaves
+	 */
+	private static AgentSupplier agent(Algorithm algorithm, double spacing, double scale)
+	{
+		ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+		for (int j = 0; j < 5; j++)
+		{
+			SimpleSupplier leaf = new SimpleSupplier(1, 10 + spacing * j, new NormalDistribution(), scale);
+			leaf.setBestArm(j == 0);
+			leaves.add(leaf);
+		}
+		
+		return new AgentSupplier(algorithm, leaves, 1, 0, new NormalDistribution(), 1, 1, true);
+	}
+	
+	/**
+	 * Build a root agent over two leaves costing 1 that never vary. The first starts out
+	 * taking 10 and jumps to 50 after its buyer's first <code>shiftAt</code> pulls, while the
+	 * second always takes 20 and is marked as the best arm.
+	 */
+	private static AgentSupplier shiftingAgent(Algorithm algorithm, long shiftAt)
+	{
+		ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+		
+		SimpleSupplier shifting = new SimpleSupplier(1, 10, new NormalDistribution(), 0);
+		shifting.setDrift(new Drift.Piecewise(shiftAt, new double[] {0, 40}));
+		leaves.add(shifting);
+		
+		SimpleSupplier steady = new SimpleSupplier(1, 20, new NormalDistribution(), 0);
+		steady.setBestArm(true);
+		leaves.add(steady);
+		
+		return new AgentSupplier(algorithm, leaves, 1, 0, new NormalDistribution(), 1, 1, true);
+	}
+	
+	/**
+	 * Get the number of times an agent pulled one of its arms this trial
+	 */
+	private static int pulls(AgentSupplier agent, int index)
+	{
+		for (ArmMemory arm : agent.getAgentMemory().getRankedListSnapshot())
+		{
+			if (arm.getSupplier() == agent.getChildren().get(index))
+			{
+				return arm.getPulls();
+			}
+		}
+		throw new IllegalArgumentException("No arm " + index);
+	}
+	
+	/**
+	 * Check that an algorithm ends every trial with the best arm ranked on top, having pulled
+	 * it more than any other arm
+	 */
+	private static void assertFindsBestArm(Algorithm algorithm)
+	{
+		AgentSupplier agent = agent(algorithm);
+		
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(BUDGET);
+			
+			assertEquals(algorithm.getName(), (long)BUDGET, agent.getTotalPulls());
+			assertTrue(algorithm.getName() + " did not rank the best arm on top", agent.getIdentifiedAt() > 0);
+			
+			for (ArmMemory arm : agent.getAgentMemory().getRankedListSnapshot())
+			{
+				assertTrue(algorithm.getName() + " pulled a worse arm " + arm.getPulls() + " times, the best arm "
+						+ agent.getBestArmPulls() + " times",
+						arm.getSupplier().isBestArm() || arm.getPulls() < agent.getBestArmPulls());
+			}
+		}
+	}
+	
+	@Test
+	public void testVertical()
+	{
+		assertFindsBestArm(new AlgorithmVertical(1.96));
+	}
+	
+	@Test
+	public void testThompson()
+	{
+		assertFindsBestArm(new AlgorithmThompson());
+	}
+	
+	@Test
+	public void testSequentialHalving()
+	{
+		assertFindsBestArm(new AlgorithmSH());
+	}
+	
+	@Test
+	public void testDiscountedUCB()
+	{
+		assertFindsBestArm(new AlgorithmDiscountedUCB(0.99));
+	}
+	
+	@Test
+	public void testSlidingWindowUCB()
+	{
+		assertFindsBestArm(new AlgorithmSlidingWindowUCB(100));
+	}
+	
+	/**
+	 * Arms that never vary have intervals of no width. Every arm but the best is dropped once
+	 * each arm has the two pulls it needs for an interval, but arms that take the same time
+	 * are never dropped.
+	 */
+	@Test
+	public void testVerticalElimination()
+	{
+		AgentSupplier agent = agent(new AlgorithmVertical(1.96), 10, 0);
+		AlgorithmVertical equalAlgorithm = new AlgorithmVertical(1.96);
+		AgentSupplier equal = agent(equalAlgorithm, 0, 0);
+		
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(BUDGET);
+			
+			// two rounds of 5 pulls, then the best arm gets the rest
+			assertEquals((long)BUDGET - 8, agent.getBestArmPulls());
+			for (int j = 1; j < 5; j++)
+			{
+				assertEquals(2, pulls(agent, j));
+			}
+			
+			equal.beginTrial();
+			equal.explore(BUDGET);
+			
+			assertFalse(equalAlgorithm.isCommitted());
+			for (int j = 0; j < 5; j++)
+			{
+				assertEquals((int)BUDGET / 5, pulls(equal, j));
+			}
+		}
+	}
+	
+	/**
+	 * Thompson sampling pulls each arm twice, then follows the posteriors as they move: the
+	 * arm that was fastest loses its pulls once it slows down and its posterior catches up
+	 */
+	@Test
+	public void testThompsonPosterior()
+	{
+		AgentSupplier agent = shiftingAgent(new AlgorithmThompson(), 100);
+		
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(4);
+			assertEquals(2, pulls(agent, 0));
+			assertEquals(2, pulls(agent, 1));
+			
+			agent.explore(96);
+			final int before = pulls(agent, 0);
+			assertTrue("pulled the faster arm only " + before + " times", before > 90);
+			
+			agent.explore(300);
+			final int after = pulls(agent, 0) - before;
+			assertTrue("pulled the slowed arm " + after + " times after it slowed", after < 100);
+		}
+	}
+	
+	/**
+	 * The rounds of sequential halving split the budget evenly, and only the few pulls
+	 * their rounding leaves over go to the winner
+	 */
+	@Test
+	public void testSequentialHalvingRounds()
+	{
+		/*
+		 * 200 pulls over ceil(log2(5)) = 3 rounds. All 5 arms get 200 / 15 = 13 pulls, the
+		 * fastest 3 get 200 / 9 = 22 more and the fastest 2 get 200 / 6 = 33 more. The
+		 * rounds take 65 + 66 + 66 = 197 pulls, leaving 3 for the winner.
+		 */
+		final int[] expected = {13 + 22 + 33 + 3, 13 + 22 + 33, 13 + 22, 13, 13};
+		AgentSupplier agent = agent(new AlgorithmSH(), 10, 0);
+		
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(BUDGET);
+			
+			for (int j = 0; j < 5; j++)
+			{
+				assertEquals("arm " + j, expected[j], pulls(agent, j));
+			}
+		}
+	}
+	
+	/**
+	 * Check that an algorithm pulls the faster of two arms until it slows down, and then
+	 * soon moves to the other arm
+	 */
+	private static void assertSwitchesAfterShift(Algorithm algorithm)
+	{
+		AgentSupplier agent = shiftingAgent(algorithm, 300);
+		
+		for (int trial = 0; trial < TRIALS; trial++)
+		{
+			agent.beginTrial();
+			agent.explore(300);
+			final int before = pulls(agent, 0);
+			assertTrue(algorithm.getName() + " pulled the faster arm only " + before + " times", before > 150);
+			
+			// a mean over every pull would take 100 pulls at the new time to fall behind
+			agent.explore(300);
+			final int after = pulls(agent, 0) - before;
+			assertTrue(algorithm.getName() + " pulled the slowed arm " + after + " times after it slowed", after < 60);
+		}
+	}
+	
+	@Test
+	public void testDiscountedUCBSwitches()
+	{
+		assertSwitchesAfterShift(new AlgorithmDiscountedUCB(0.99));
+	}
+	
+	@Test
+	public void testSlidingWindowUCBSwitches()
+	{
+		assertSwitchesAfterShift(new AlgorithmSlidingWindowUCB(100));
+	}
+	
+	@Test
+	public void testInvalidParameters()
+	{
+		try
+		{
+			new AlgorithmSlidingWindowUCB(0);
+			fail("should not construct");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals("Window size must be at least 1", e.getMessage());
+		}
+		
+		try
+		{
+			new AlgorithmDiscountedUCB(0);
+			fail("should not construct");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals("Discount must be greater than 0 and at most 1", e.getMessage());
+		}
+	}
+	
+}
@@ -0,0 +1,191 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+import com.zkxs.supplychain.AgentMemory;
+import com.zkxs.supplychain.ArmMemory;
+import com.zkxs.supplychain.ArmPullRequest;
+import com.zkxs.supplychain.SimpleSupplier;
+import com.zkxs.supplychain.Supplier;
+
+
+public class ArmMemoryTest
+{
+	ArmMemory arm;
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{
+		arm = new ArmMemory(null, 0);
+	}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	@Test
+	public void testUnpulled()
+	{
+		assertEquals(Double.MAX_VALUE, arm.getMeanTime(), 0);
+		assertEquals(Double.MAX_VALUE, arm.getVariance(), 0);
+		
+		arm.recordPull(5);
+		assertEquals(5, arm.getMeanTime(), 0);
+		assertFalse(arm.hasVariance());
+		assertEquals(Double.MAX_VALUE, arm.getVariance(), 0);
+		assertEquals(-Double.MAX_VALUE, arm.getLowerConfidenceBound(1.96), 0);
+		assertEquals(Double.MAX_VALUE, arm.getUpperConfidenceBound(1.96), 0);
+	}
+	
+	@Test
+	public void testVariance()
+	{
+		double[] times = {2, 4, 4, 4, 5, 5, 7, 9};
+		for (double time : times)
+		{
+			arm.recordPull(time);
+		}
+		
+		assertEquals(5, arm.getMeanTime(), 1e-12);
+		assertTrue(arm.hasVariance());
+		assertEquals(32.0 / 7, arm.getVariance(), 1e-12);
+		assertEquals(Math.sqrt(32.0 / 7), arm.getStandardDeviation(), 1e-12);
+		
+		double error = 2 * Math.sqrt(32.0 / 7 / 8);
+		assertEquals(5 - error, arm.getLowerConfidenceBound(2), 1e-12);
+		assertEquals(5 + error, arm.getUpperConfidenceBound(2), 1e-12);
+	}
+	
+	@Test
+	public void testRecordPullsMatchesRecordPull()
+	{
+		ArmMemory single = new ArmMemory(null, 1);
+		
+		arm.recordPull(3);
+		arm.recordPulls(4, 8);
+		arm.recordPull(1);
+		
+		single.recordPull(3);
+		for (int i = 0; i < 4; i++)
+		{
+			single.recordPull(8);
+		}
+		single.recordPull(1);
+		
+		assertEquals(single.getPulls(), arm.getPulls());
+		assertEquals(single.getMeanTime(), arm.getMeanTime(), 1e-12);
+		assertEquals(single.getVariance(), arm.getVariance(), 1e-12);
+	}
+	
+	@Test
+	public void testRecordPullsWithSpread()
+	{
+		double[] times = {2, 4, 4, 4, 5, 5, 7, 9};
+		for (int i = 0; i < 3; i++)
+		{
+			arm.recordPull(times[i]);
+		}
+		
+		// the other five times have a mean of 6 and squared deviations of 4 + 1 + 1 + 1 + 9
+		arm.recordPulls(5, 6, 16);
+		
+		assertEquals(8, arm.getPulls());
+		assertEquals(5, arm.getMeanTime(), 1e-12);
+		assertEquals(32.0 / 7, arm.getVariance(), 1e-12);
+	}
+	
+	@Test
+	public void testAggregatedPullsKeepVariance()
+	{
+		ArrayList<Supplier> suppliers = new ArrayList<Supplier>();
+		suppliers.add(new SimpleSupplier(1, 10, new NormalDistribution(0, 1), 2));
+		AgentMemory memory = new AgentMemory(suppliers);
+		
+		memory.pullBestAggregated(10000);
+		
+		ArmMemory best = memory.getBest();
+		assertEquals(10000, best.getPulls());
+		assertEquals(10, best.getMeanTime(), 0.1);
+		assertEquals(4, best.getVariance(), 0.3);
+	}
+	
+	@Test
+	public void testStable()
+	{
+		// large offsets ruin the naive sum of squares approach
+		for (int i = 0; i < 1000; i++)
+		{
+			arm.recordPull(1e9 + (i % 2));
+		}
+		
+		assertEquals(0.25 * 1000 / 999, arm.getVariance(), 1e-6);
+	}
+	
+	@Test
+	public void testReset()
+	{
+		arm.recordPull(1);
+		arm.recordPull(3);
+		arm.reset();
+		
+		assertTrue(arm.isUnpulled());
+		arm.recordPull(10);
+		arm.recordPull(12);
+		assertEquals(11, arm.getMeanTime(), 0);
+		assertEquals(2, arm.getVariance(), 0);
+	}
+	
+	@Test
+	public void testAgentMemoryReset()
+	{
+		ArrayList<Supplier> suppliers = new ArrayList<Supplier>();
+		for (int i = 0; i < 3; i++)
+		{
+			suppliers.add(new SimpleSupplier(1, 10 + i, new NormalDistribution(), 0));
+		}
+		AgentMemory memory = new AgentMemory(suppliers);
+		
+		// the arm with the lowest mean time ranks on top
+		for (int i = 0; i < 3; i++)
+		{
+			memory.pull(ArmPullRequest.get(i, false));
+		}
+		assertEquals(0, memory.getBest().getIndex());
+		
+		// every arm reads as never pulled, and the ranking is by index again
+		memory.reset();
+		ArrayList<ArmMemory> ranked = new ArrayList<ArmMemory>();
+		for (ArmMemory arm : memory.getRankedListSnapshot())
+		{
+			ranked.add(arm);
+			assertTrue(arm.isUnpulled());
+			assertEquals(0, arm.getPulls());
+		}
+		assertEquals(2, memory.getBest().getIndex());
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(i, ranked.get(i).getIndex());
+		}
+		
+		memory.pull(ArmPullRequest.get(0, false));
+		assertEquals(0, memory.getBest().getIndex());
+		assertEquals(1, ranked.get(0).getPulls());
+	}
+	
+}
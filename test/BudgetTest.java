@@ -0,0 +1,105 @@
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.Budget;
+import com.zkxs.supplychain.SimpleSupplier;
+
+
+public class BudgetTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	@Test
+	public void testRoundTrip()
+	{
+		// every whole number of units survives the trip through an amount
+		for (long units = 0; units < 10 * Budget.UNITS; units += 997)
+		{
+			assertEquals(units, Budget.toUnits(Budget.toAmount(units)));
+		}
+		
+		assertEquals(1, Budget.toUnits(1.0 / Budget.UNITS));
+		assertEquals(1.0 / Budget.UNITS, Budget.toAmount(1), 0);
+		assertEquals(0.1, Budget.toAmount(Budget.toUnits(0.1)), 0);
+		assertEquals(1234.5678, Budget.toAmount(Budget.toUnits(1234.5678)), 0);
+	}
+	
+	@Test
+	public void testRounding()
+	{
+		// amounts finer than a unit round to the nearest unit
+		assertEquals(0, Budget.toUnits(0.4 / Budget.UNITS));
+		assertEquals(1, Budget.toUnits(0.6 / Budget.UNITS));
+		assertEquals(Budget.UNITS, Budget.toUnits(1 - 0.4 / Budget.UNITS));
+	}
+	
+	@Test
+	public void testSpendingIsExact()
+	{
+		// ten pulls costing 0.1 spend a budget of 1 exactly, where doubles leave a remainder
+		final long cost = Budget.toUnits(0.1);
+		long budget = Budget.toUnits(1);
+		double doubleBudget = 1;
+		
+		assertEquals(10, Budget.affordablePulls(budget, cost));
+		
+		for (int i = 0; i < 10; i++)
+		{
+			budget -= cost;
+			doubleBudget -= 0.1;
+		}
+		
+		assertEquals(0, budget);
+		assertTrue(doubleBudget != 0);
+	}
+	
+	@Test
+	public void testAffordablePulls()
+	{
+		assertEquals(0, Budget.affordablePulls(Budget.toUnits(0.999999), Budget.toUnits(1)));
+		assertEquals(3, Budget.affordablePulls(Budget.toUnits(1), Budget.toUnits(0.3)));
+		assertEquals(Integer.MAX_VALUE, Budget.affordablePulls(Long.MAX_VALUE, 1));
+	}
+	
+	@Test
+	public void testFreeSupplier()
+	{
+		// a cost that rounds to no units at all would divide the budget by zero
+		for (double cost : new double[] {0, 0.4 / Budget.UNITS, -1})
+		{
+			try
+			{
+				new SimpleSupplier(cost, 10, new NormalDistribution(), 1);
+				fail("should not construct");
+			}
+			catch (IllegalArgumentException e)
+			{
+				assertEquals("Cost must be at least one budget unit", e.getMessage());
+			}
+		}
+		
+		assertEquals(1, new SimpleSupplier(1.0 / Budget.UNITS, 10, new NormalDistribution(), 1).getCostUnits());
+	}
+	
+}
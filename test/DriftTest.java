@@ -0,0 +1,111 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.AgentSupplier;
+import com.zkxs.supplychain.AlgorithmGreedy;
+import com.zkxs.supplychain.Drift;
+import com.zkxs.supplychain.SimpleSupplier;
+import com.zkxs.supplychain.Supplier;
+
+
+public class DriftTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	@Test
+	public void testLinear()
+	{
+		Drift drift = new Drift.Linear(10, 100);
+		assertEquals(0, drift.shift(0), 0);
+		assertEquals(2.5, drift.shift(25), 1e-12);
+		assertEquals(10, drift.shift(100), 0);
+		assertEquals(10, drift.shift(1000), 0);
+	}
+	
+	@Test
+	public void testPiecewise()
+	{
+		Drift drift = new Drift.Piecewise(10, new double[]{0, 3, -2});
+		assertEquals(0, drift.shift(9), 0);
+		assertEquals(3, drift.shift(10), 0);
+		assertEquals(-2, drift.shift(29), 0);
+		assertEquals(-2, drift.shift(1000), 0); // the last piece remains
+	}
+	
+	@Test
+	public void testRegime()
+	{
+		Drift drift = new Drift.Regime(5, 10, 5);
+		assertEquals(0, drift.shift(0), 0);
+		assertEquals(5, drift.shift(5), 0);
+		assertEquals(5, drift.shift(14), 0);
+		assertEquals(0, drift.shift(15), 0);
+	}
+	
+	@Test
+	public void testRandom()
+	{
+		Random rand = new Random(42);
+		assertNull(Drift.random(Drift.Kind.NONE, 5, 10, rand));
+		
+		for (Drift.Kind kind : new Drift.Kind[]{Drift.Kind.LINEAR, Drift.Kind.PIECEWISE, Drift.Kind.REGIME})
+		{
+			for (int i = 0; i < 100; i++)
+			{
+				Drift drift = Drift.random(kind, 5, 10, rand);
+				for (long time = 0; time < 100; time++)
+				{
+					assertTrue(Math.abs(drift.shift(time)) <= 5);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A supplier drifts with the pulls of the agent buying from it, and starts over every trial
+	 */
+	@Test
+	public void testSupplierFollowsBuyer()
+	{
+		ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+		SimpleSupplier leaf = new SimpleSupplier(1, 10, new NormalDistribution(), 0);
+		leaf.setDrift(new Drift.Linear(10, 100));
+		leaf.setBestArm(true);
+		leaves.add(leaf);
+		
+		AgentSupplier agent = new AgentSupplier(new AlgorithmGreedy(), leaves, 1, 0, new NormalDistribution(), 0, 1, true);
+		
+		for (int trial = 0; trial < 3; trial++)
+		{
+			agent.beginTrial();
+			
+			// pull i takes 10 + 10 * i / 100, which average to 10 + 10 * 49.5 / 100
+			assertEquals(14.95, agent.explore(100), 1e-9);
+		}
+	}
+	
+}
@@ -0,0 +1,246 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.distribution.RealDistribution;
+import org.apache.commons.math3.distribution.UniformRealDistribution;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.AgentSupplier;
+import com.zkxs.supplychain.Algorithm;
+import com.zkxs.supplychain.AlgorithmGreedy;
+import com.zkxs.supplychain.AlgorithmSH;
+import com.zkxs.supplychain.AlgorithmThompson;
+import com.zkxs.supplychain.AlgorithmUCB_BV1;
+import com.zkxs.supplychain.AlgorithmVertical;
+import com.zkxs.supplychain.Budget;
+import com.zkxs.supplychain.RandomProvider;
+import com.zkxs.supplychain.SimpleSupplier;
+import com.zkxs.supplychain.Supplier;
+
+
+public class ExploreTest
+{
+	private static final long SEED = 42;
+	
+	/** The budget of the root */
+	private static final double BUDGET = 60;
+	
+	/** The number of pulls each child agent makes per purchase */
+	private static final int MULTIPLIER = 6;
+	
+	/** The scale of the processing time of the child agents */
+	private static final double AGENT_SCALE = 2;
+	
+	/** The scale of the leaves */
+	private static final double LEAF_SCALE = 4;
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	/**
+	 * Hides whether an algorithm selects in batches or commits, so the agent asks it for
+	 * every pull one at a time
+	 */
+	private static class PerPull implements Algorithm
+	{
+		private final Algorithm algorithm;
+		
+		PerPull(Algorithm algorithm)
+		{
+			this.algorithm = algorithm;
+		}
+		
+		@Override
+		public void init(AgentSupplier agent)
+		{
+			algorithm.init(agent);
+		}
+		
+		@Override
+		public int getNextArm(AgentSupplier agent)
+		{
+			return algorithm.getNextArm(agent);
+		}
+		
+		@Override
+		public Algorithm duplicate()
+		{
+			return new PerPull(algorithm.duplicate());
+		}
+		
+		@Override
+		public void reset()
+		{
+			algorithm.reset();
+		}
+		
+		@Override
+		public boolean requiresInitialBudget()
+		{
+			return algorithm.requiresInitialBudget();
+		}
+		
+		@Override
+		public boolean isCommitted()
+		{
+			return false;
+		}
+		
+		@Override
+		public String getName()
+		{
+			return algorithm.getName();
+		}
+	}
+	
+	/**
+	 * Build a root agent over 3 agents of 4 leaves each, all costing 1. If the arms are
+	 * identical, every pull draws the same samples whichever arm is chosen. Like the driver,
+	 * only the root is given an algorithm that needs its whole budget up front.
+	 */
+	private static AgentSupplier tree(Algorithm algorithm, RealDistribution distribution, boolean identical)
+	{
+		Algorithm childAlgorithm = algorithm.requiresInitialBudget() ? new AlgorithmGreedy() : algorithm;
+		
+		ArrayList<Supplier> agents = new ArrayList<Supplier>();
+		for (int i = 0; i < 3; i++)
+		{
+			ArrayList<Supplier> leaves = new ArrayList<Supplier>();
+			for (int j = 0; j < 4; j++)
+			{
+				SimpleSupplier leaf = new SimpleSupplier(1, identical ? 10 : 10 + 5 * j, distribution, LEAF_SCALE);
+				leaf.setBestArm(j == 0);
+				leaves.add(leaf);
+			}
+			
+			AgentSupplier agent = new AgentSupplier(childAlgorithm.duplicate(), leaves, 1, identical ? 5 : 5 + i,
+					distribution, AGENT_SCALE, MULTIPLIER, false);
+			agent.setBestArm(i == 0);
+			agents.add(agent);
+		}
+		
+		return new AgentSupplier(algorithm.duplicate(), agents, 1, 0, distribution, AGENT_SCALE, 3, true);
+	}
+	
+	/**
+	 * Draw a sample the way a supplier does
+	 */
+	private static double sample(Supplier supplier, RealDistribution distribution, double scale)
+	{
+		return (distribution.sample() - distribution.getNumericalMean()) * scale + supplier.getMeanTime();
+	}
+	
+	/**
+	 * Explore the way agents did before the explicit stack: each purchase from a child agent
+	 * explores it recursively, then adds its processing time. Only valid for identical arms,
+	 * so that which arm is pulled does not matter.
+	 */
+	private static double recursiveExplore(AgentSupplier agent, double budget, RealDistribution distribution)
+	{
+		final Supplier arm = agent.getChildren().get(0);
+		final int pulls = Budget.affordablePulls(Budget.toUnits(budget), arm.getCostUnits());
+		
+		double sum = 0;
+		for (int i = 0; i < pulls; i++)
+		{
+			if (arm.isLeafNode())
+			{
+				sum += sample(arm, distribution, LEAF_SCALE);
+			}
+			else
+			{
+				final double timeTaken = recursiveExplore((AgentSupplier)arm, arm.getCost() * MULTIPLIER, distribution);
+				sum += timeTaken + sample(arm, distribution, AGENT_SCALE);
+			}
+		}
+		
+		return sum / pulls;
+	}
+	
+	private static void assertMatchesRecursion(Algorithm algorithm)
+	{
+		RealDistribution distribution = new UniformRealDistribution(0, 1);
+		AgentSupplier root = tree(algorithm, distribution, true);
+		
+		for (int trial = 0; trial < 3; trial++)
+		{
+			distribution.reseedRandomGenerator(SEED + trial);
+			root.beginTrial();
+			double time = root.explore(BUDGET);
+			
+			distribution.reseedRandomGenerator(SEED + trial);
+			double expected = recursiveExplore(root, BUDGET, distribution);
+			
+			assertEquals(algorithm.getName(), expected, time, 1e-9 * expected);
+		}
+	}
+	
+	private static void assertMatchesPerPull(Algorithm algorithm)
+	{
+		RealDistribution distribution = new UniformRealDistribution(0, 1);
+		
+		// agents seed their own generators from their ids, so both trees need the same ids
+		RandomProvider.rand.setSeed(SEED);
+		AgentSupplier root = tree(algorithm, distribution, false);
+		RandomProvider.rand.setSeed(SEED);
+		AgentSupplier perPullRoot = tree(new PerPull(algorithm), distribution, false);
+		
+		for (int trial = 0; trial < 3; trial++)
+		{
+			distribution.reseedRandomGenerator(SEED + trial);
+			RandomProvider.rand.setSeed(SEED + trial);
+			root.beginTrial();
+			double time = root.explore(BUDGET);
+			
+			distribution.reseedRandomGenerator(SEED + trial);
+			RandomProvider.rand.setSeed(SEED + trial);
+			perPullRoot.beginTrial();
+			double perPullTime = perPullRoot.explore(BUDGET);
+			
+			assertEquals(algorithm.getName(), perPullTime, time, 1e-9 * perPullTime);
+			for (int i = 0; i < 3; i++)
+			{
+				assertEquals(algorithm.getName(), ((AgentSupplier)perPullRoot.getChildren().get(i)).getTotalPulls(),
+						((AgentSupplier)root.getChildren().get(i)).getTotalPulls());
+			}
+		}
+	}
+	
+	@Test
+	public void testIterativeMatchesRecursive()
+	{
+		assertMatchesRecursion(new AlgorithmGreedy());
+		assertMatchesRecursion(new AlgorithmUCB_BV1());
+		assertMatchesRecursion(new AlgorithmVertical(1.96));
+		assertMatchesRecursion(new AlgorithmThompson());
+		assertMatchesRecursion(new AlgorithmSH());
+	}
+	
+	@Test
+	public void testCommittedAndBatchedMatchPerPull()
+	{
+		assertMatchesPerPull(new AlgorithmGreedy());
+		assertMatchesPerPull(new AlgorithmVertical(1.96));
+		assertMatchesPerPull(new AlgorithmThompson());
+		assertMatchesPerPull(new AlgorithmSH());
+	}
+	
+}
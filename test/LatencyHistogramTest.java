@@ -0,0 +1,88 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.LatencyHistogram;
+
+
+public class LatencyHistogramTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	@Test
+	public void testEmpty()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(0.5));
+		assertTrue(Double.isNaN(histogram.getMean()));
+	}
+	
+	@Test
+	public void testSmallValuesAreExact()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 8; i++)
+		{
+			histogram.record(i);
+		}
+		
+		assertEquals(8, histogram.getCount());
+		assertEquals(3.5, histogram.getMean(), 0);
+		assertEquals(3, histogram.getPercentile(0.5));
+		assertEquals(7, histogram.getPercentile(1.0));
+	}
+	
+	@Test
+	public void testRelativeError()
+	{
+		// every percentile is within an eighth of the true value, and never below it
+		for (long value = 1; value < Long.MAX_VALUE / 3; value = value * 3 + 1)
+		{
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.record(value);
+			long estimate = histogram.getPercentile(0.5);
+			assertTrue(value + " -> " + estimate, estimate >= value);
+			assertTrue(value + " -> " + estimate, estimate - value <= value / 8);
+		}
+	}
+	
+	@Test
+	public void testPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++)
+		{
+			histogram.record(i);
+		}
+		
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500.5, histogram.getMean(), 0);
+		assertEquals(500, histogram.getPercentile(0.5), 500 / 8);
+		assertEquals(990, histogram.getPercentile(0.99), 990 / 8);
+		
+		// negative durations count as 0
+		histogram.record(-5);
+		assertEquals(1001, histogram.getCount());
+	}
+	
+}
@@ -0,0 +1,110 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.distribution.RealDistribution;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.Algorithm;
+import com.zkxs.supplychain.AlgorithmLSplit;
+import com.zkxs.supplychain.AlgorithmSOAAV;
+import com.zkxs.supplychain.ParameterSweep;
+import com.zkxs.supplychain.TreeShape;
+
+
+public class ParameterSweepTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	private static final ParameterSweep.DistributionFactory NORMAL = new ParameterSweep.DistributionFactory()
+	{
+		@Override
+		public RealDistribution create()
+		{
+			return new NormalDistribution();
+		}
+		
+		@Override
+		public String getName()
+		{
+			return "normal";
+		}
+	};
+	
+	private static final ParameterSweep.AlgorithmFactory SOAAV = new ParameterSweep.AlgorithmFactory()
+	{
+		@Override
+		public Algorithm create(double budget)
+		{
+			return new AlgorithmSOAAV(0);
+		}
+	};
+	
+	private static final ParameterSweep.AlgorithmFactory L_SPLIT = new ParameterSweep.AlgorithmFactory()
+	{
+		@Override
+		public Algorithm create(double budget)
+		{
+			return new AlgorithmLSplit(2);
+		}
+	};
+	
+	@Test
+	public void testCellCount()
+	{
+		ParameterSweep sweep = new ParameterSweep(new double[] {50, 100, 150}, new double[] {1, 20},
+				new ParameterSweep.DistributionFactory[] {NORMAL}, TreeShape.values(),
+				new ParameterSweep.AlgorithmFactory[] {SOAAV, L_SPLIT}, 10);
+		
+		assertEquals(3 * 2 * 1 * 3 * 2, sweep.getCellCount());
+		assertEquals(3 * 2 * 1 * 3 * 2 * 10, sweep.getTotalTrials());
+	}
+	
+	@Test
+	public void testOneLinePerCell() throws Exception
+	{
+		ParameterSweep sweep = new ParameterSweep(new double[] {20, 40}, new double[] {5},
+				new ParameterSweep.DistributionFactory[] {NORMAL}, new TreeShape[] {TreeShape.LINEAR, TreeShape.TERRACED},
+				new ParameterSweep.AlgorithmFactory[] {SOAAV, L_SPLIT}, 3);
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes, true, "UTF-8");
+		sweep.run(out, 2, null);
+		
+		String[] lines = bytes.toString("UTF-8").split("\n");
+		assertEquals(ParameterSweep.HEADER, lines[0]);
+		assertEquals(1 + sweep.getCellCount(), lines.length);
+		
+		int columns = ParameterSweep.HEADER.split("\t").length;
+		for (int i = 1; i < lines.length; i++)
+		{
+			String[] fields = lines[i].split("\t");
+			assertEquals(columns, fields.length);
+			assertEquals("normal", fields[2]);
+			assertEquals("3", fields[5]);
+			assertTrue(lines[i], Double.parseDouble(fields[6]) > 0);
+		}
+	}
+	
+}
@@ -0,0 +1,94 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.QuantileSketch;
+
+
+public class QuantileSketchTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	@Test
+	public void testEmpty()
+	{
+		QuantileSketch sketch = new QuantileSketch(16);
+		assertEquals(0, sketch.size());
+		assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+	}
+	
+	@Test
+	public void testExactWhenSmall()
+	{
+		QuantileSketch sketch = new QuantileSketch(16);
+		for (int i = 10; i >= 1; i--)
+		{
+			sketch.add(i);
+		}
+		
+		assertEquals(1, sketch.getQuantile(0), 0);
+		assertEquals(5, sketch.getQuantile(0.5), 0);
+		assertEquals(9, sketch.getQuantile(0.9), 0);
+		assertEquals(10, sketch.getQuantile(1), 0);
+	}
+	
+	@Test
+	public void testLargeStream()
+	{
+		ArrayList<Integer> numbers = new ArrayList<Integer>();
+		for (int i = 1; i <= 100000; i++)
+		{
+			numbers.add(i);
+		}
+		Collections.shuffle(numbers, new Random(42));
+		
+		QuantileSketch sketch = new QuantileSketch(128);
+		for (int number : numbers)
+		{
+			sketch.add(number);
+		}
+		
+		assertEquals(100000, sketch.size());
+		assertEquals(50000, sketch.getQuantile(0.5), 2000);
+		assertEquals(99000, sketch.getQuantile(0.99), 2000);
+		assertEquals(1, sketch.getQuantile(0), 2000);
+	}
+	
+	@Test
+	public void testClear()
+	{
+		QuantileSketch sketch = new QuantileSketch(4);
+		for (int i = 0; i < 100; i++)
+		{
+			sketch.add(100);
+		}
+		sketch.clear();
+		sketch.add(1);
+		assertEquals(1, sketch.size());
+		assertEquals(1, sketch.getQuantile(0.5), 0);
+	}
+	
+}
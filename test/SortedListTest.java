@@ -168,6 +168,26 @@ public class SortedListTest
 		}
 	}
 	
+	@Test
+	public void testCopyFrom()
+	{
+		SortedList<Integer> list = new SortedList<Integer>();
+		
+		list.add(7);
+		list.add(-2);
+		
+		list.copyFrom(three);
+		assertEquals("{1, 2, 3}", list.toString());
+		
+		list.copyFrom(empty);
+		assertTrue(list.isEmpty());
+		
+		// the copy must not share storage with the original
+		list.copyFrom(two);
+		list.add(5);
+		assertEquals("{1, 2}", two.toString());
+	}
+	
 	@Test
 	public void testRemove()
 	{
@@ -0,0 +1,146 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zkxs.supplychain.StreamingQuantile;
+
+
+public class StreamingQuantileTest
+{
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception
+	{}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception
+	{}
+	
+	@Before
+	public void setUp() throws Exception
+	{}
+	
+	@After
+	public void tearDown() throws Exception
+	{}
+	
+	@Test
+	public void testEmpty()
+	{
+		StreamingQuantile quantile = new StreamingQuantile(0.5);
+		assertEquals(0, quantile.size());
+		assertTrue(Double.isNaN(quantile.get()));
+	}
+	
+	@Test
+	public void testExactWhenSmall()
+	{
+		StreamingQuantile median = new StreamingQuantile(0.5);
+		median.add(7);
+		assertEquals(7, median.get(), 0);
+		
+		median.add(3);
+		median.add(5);
+		assertEquals(5, median.get(), 0);
+		
+		StreamingQuantile max = new StreamingQuantile(1.0);
+		max.add(2);
+		max.add(9);
+		max.add(4);
+		assertEquals(9, max.get(), 0);
+	}
+	
+	@Test
+	public void testSmallAgainstSorted()
+	{
+		Random random = new Random(42);
+		for (double p : new double[] {0.5, 0.9, 0.99})
+		{
+			for (int n = 1; n <= 10; n++)
+			{
+				StreamingQuantile quantile = new StreamingQuantile(p);
+				double[] sorted = new double[n];
+				for (int i = 0; i < n; i++)
+				{
+					sorted[i] = random.nextInt(100);
+					quantile.add(sorted[i]);
+				}
+				Arrays.sort(sorted);
+				
+				// nearest rank
+				final double expected = sorted[(int)Math.ceil(p * n) - 1];
+				assertEquals("p=" + p + ", n=" + n, expected, quantile.get(), 0);
+			}
+		}
+		
+		// the reported cases
+		StreamingQuantile tail = new StreamingQuantile(0.9);
+		for (int i = 1; i <= 5; i++)
+		{
+			tail.add(i);
+		}
+		assertEquals(5, tail.get(), 0);
+		for (int i = 6; i <= 10; i++)
+		{
+			tail.add(i);
+		}
+		assertEquals(9, tail.get(), 0);
+	}
+	
+	@Test
+	public void testLargeStream()
+	{
+		ArrayList<Integer> numbers = new ArrayList<Integer>();
+		for (int i = 1; i <= 10000; i++)
+		{
+			numbers.add(i);
+		}
+		Collections.shuffle(numbers, new Random(42));
+		
+		StreamingQuantile median = new StreamingQuantile(0.5);
+		StreamingQuantile tail = new StreamingQuantile(0.9);
+		for (int number : numbers)
+		{
+			median.add(number);
+			tail.add(number);
+		}
+		
+		assertEquals(10000, median.size());
+		assertEquals(5000, median.get(), 100);
+		assertEquals(9000, tail.get(), 100);
+	}
+	
+	@Test
+	public void testClear()
+	{
+		StreamingQuantile quantile = new StreamingQuantile(0.5);
+		quantile.add(100, 20);
+		quantile.clear();
+		quantile.add(1);
+		assertEquals(1, quantile.get(), 0);
+	}
+	
+	@Test
+	public void testInvalidQuantile()
+	{
+		try
+		{
+			new StreamingQuantile(1.5);
+			fail("should not construct");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals("Quantile must be between 0 and 1", e.getMessage());
+		}
+	}
+	
+}